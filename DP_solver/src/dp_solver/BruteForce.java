@@ -0,0 +1,147 @@
+package dp_solver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BruteForce decides a formula by trying every assignment of its variables,
+ * the way the brute force evaluator of the first assignment does. The
+ * assignments are visited in Gray code order, so each one differs from the
+ * one before it in a single variable. Every clause keeps the number of its
+ * true literals, and a step only updates the clauses of the variable that
+ * changed, instead of evaluating the whole formula again.
+ *
+ * With 2^n assignments to try, this only pays off for formulas with very few
+ * variables, where it has no setup cost to make up for.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class BruteForce
+{
+
+    /**
+     * Stores, for every literal, the clauses that contain it. The list for a
+     * literal is found with Literals.code().
+     */
+    private final IntList[] occurrences;
+    /**
+     * The number of true literals in every clause.
+     */
+    private final int[] true_counts;
+    /**
+     * The number of clauses with no true literal.
+     */
+    private int unsatisfied;
+    /**
+     * The current truth value of every variable.
+     */
+    private final boolean[] values;
+    /**
+     * The largest number of variables whose assignments can be counted.
+     */
+    static final int MAX_VARIABLES = 62;
+
+    /**
+     * Initializes a search over the input clauses of a formula.
+     *
+     * @param formula the formula, as read from the input.
+     * @throws IllegalArgumentException if the formula has more than
+     * MAX_VARIABLES variables.
+     */
+    BruteForce(Formula formula)
+    {
+        int variables = formula.getVariableCount();
+        if (variables > MAX_VARIABLES)
+        {
+            throw new IllegalArgumentException("Brute force cannot try 2^"
+                    + variables + " assignments");
+        }
+        List<int[]> clauses = new ArrayList<int[]>();
+        for (int i = 0; i < formula.getOriginalClauseCount(); i++)
+        {
+            clauses.add(formula.getOriginalClause(i));
+        }
+        this.occurrences = new IntList[2 * variables];
+        for (int literal = 0; literal < occurrences.length; literal++)
+        {
+            occurrences[literal] = new IntList(0);
+        }
+        this.true_counts = new int[clauses.size()];
+        this.values = new boolean[variables];
+        this.unsatisfied = 0;
+        for (int c = 0; c < clauses.size(); c++)
+        {
+            for (int literal : clauses.get(c))
+            {
+                occurrences[Literals.code(literal)].add(c);
+                // Every variable starts out false.
+                if (literal < 0)
+                {
+                    true_counts[c]++;
+                }
+            }
+            if (true_counts[c] == 0)
+            {
+                unsatisfied++;
+            }
+        }
+    }
+
+    /**
+     * Tries assignments until one satisfies every clause.
+     *
+     * @return true if a solution was found, false if none exists.
+     */
+    boolean solve()
+    {
+        long assignments = 1L << values.length;
+        for (long step = 1; unsatisfied > 0 && step < assignments; step++)
+        {
+            flip(Long.numberOfTrailingZeros(step));
+        }
+        return unsatisfied == 0;
+    }
+
+    /**
+     * Get the assignment the search stopped at, which is a solution if
+     * solve() returned true.
+     *
+     * @return the truth value of every variable, where the value of variable
+     * v is at index v - 1.
+     */
+    boolean[] getModel()
+    {
+        return values.clone();
+    }
+
+    /**
+     * Flips a variable and updates the counts of the clauses it is in.
+     * A literal that occurs twice in a clause is counted twice, which keeps
+     * the counts right.
+     *
+     * @param var_index the index of the variable.
+     */
+    private void flip(int var_index)
+    {
+        values[var_index] = !values[var_index];
+        int made_true = Literals.code(var_index, !values[var_index]);
+        IntList satisfied = occurrences[made_true];
+        for (int i = 0; i < satisfied.size(); i++)
+        {
+            if (true_counts[satisfied.get(i)]++ == 0)
+            {
+                unsatisfied--;
+            }
+        }
+        IntList falsified = occurrences[made_true ^ 1];
+        for (int i = 0; i < falsified.size(); i++)
+        {
+            if (--true_counts[falsified.get(i)] == 0)
+            {
+                unsatisfied++;
+            }
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package dp_solver;
+
+import static java.lang.Math.abs;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * CardinalitySystem holds the at-most-k constraints hidden in a formula. An
+ * at-most-one constraint over n literals is written in CNF as the n(n-1)/2
+ * binary clauses that forbid every pair of them from being true together.
+ * Those clauses are found as cliques in the graph whose edges are the binary
+ * clauses, and each clique becomes one constraint that the Formula
+ * propagates with a counter of its true literals instead of the clauses.
+ *
+ * The constraints also give a counting argument that resolution cannot make
+ * in polynomial size. If the literals of a set of disjoint clauses all lie in
+ * the at-most-one constraints, every clause needs its own constraint to hold
+ * its true literal. When no matching of the clauses to the constraints covers
+ * every clause, as with more pigeons than holes, the formula is
+ * unsatisfiable.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class CardinalitySystem
+{
+
+    /**
+     * Stores the literals of every constraint.
+     */
+    private final int[][] constraints;
+    /**
+     * Stores the largest number of true literals every constraint allows.
+     */
+    private final int[] bounds;
+    /**
+     * Stores, for every literal, the constraints that contain it. The list
+     * for a literal is found with Literals.code().
+     */
+    private final IntList[] containing;
+    /**
+     * True if the counting argument proved the formula unsatisfiable.
+     */
+    private final boolean contradictory;
+    /**
+     * Constraints with fewer literals than this are left as clauses, since a
+     * counter would not save anything.
+     */
+    private static final int MIN_CONSTRAINT_SIZE = 3;
+    /**
+     * The largest number of adjacency tests the clique search may make.
+     */
+    private static final long CLIQUE_BUDGET = 10000000;
+    /**
+     * The largest number of steps the matching of clauses to constraints may
+     * take.
+     */
+    private static final long MATCHING_BUDGET = 10000000;
+
+    /**
+     * Initializes the system with the given constraints.
+     *
+     * @param variables the number of variables in the formula.
+     * @param constraints the literals of every constraint.
+     * @param bounds the bound of every constraint.
+     * @param contradictory true if the formula is known to be
+     * unsatisfiable.
+     */
+    private CardinalitySystem(int variables, int[][] constraints, int[] bounds,
+            boolean contradictory)
+    {
+        this.constraints = constraints;
+        this.bounds = bounds;
+        this.contradictory = contradictory;
+        this.containing = new IntList[2 * variables];
+        for (int literal = 0; literal < containing.length; literal++)
+        {
+            containing[literal] = new IntList(0);
+        }
+        for (int c = 0; c < constraints.length; c++)
+        {
+            for (int i = 0; i < constraints[c].length; i++)
+            {
+                containing[Literals.code(constraints[c][i])].add(c);
+            }
+        }
+    }
+
+    /**
+     * Looks for at-most-one constraints among the binary clauses of a
+     * formula, and tries to refute the formula by matching its other clauses
+     * to them. Each literal is put in at most one constraint.
+     *
+     * @param formula the formula to be searched.
+     * @return the constraints of the formula, or null if there are none.
+     */
+    static CardinalitySystem detect(Formula formula)
+    {
+        int variables = formula.getVariableCount();
+        int nodes = 2 * variables;
+
+        // The binary clause (a or b) says that -a and -b are not both true.
+        IntList[] neighbors = new IntList[nodes];
+        for (int node = 0; node < nodes; node++)
+        {
+            neighbors[node] = new IntList(0);
+        }
+        for (int i = 0; i < formula.getOriginalClauseCount(); i++)
+        {
+            int[] clause = formula.getOriginalClause(i);
+            if (clause.length == 2 && abs(clause[0]) != abs(clause[1]))
+            {
+                neighbors[Literals.code(-clause[0])].add(Literals.code(-clause[1]));
+                neighbors[Literals.code(-clause[1])].add(Literals.code(-clause[0]));
+            }
+        }
+        int[][] adjacent = new int[nodes][];
+        Integer[] order = new Integer[nodes];
+        for (int node = 0; node < nodes; node++)
+        {
+            adjacent[node] = neighbors[node].sortedDistinct();
+            neighbors[node] = null;
+            order[node] = node;
+        }
+        final int[][] degrees = adjacent;
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer first, Integer second)
+            {
+                return degrees[second].length - degrees[first].length;
+            }
+        });
+
+        // Grow a clique greedily from each literal that is not in one yet,
+        // trying its neighbors with the most edges first.
+        int[] constraint_of = new int[nodes];
+        Arrays.fill(constraint_of, -1);
+        List<int[]> cliques = new ArrayList<int[]>();
+        long budget = CLIQUE_BUDGET;
+        IntList clique = new IntList();
+        for (int seed : order)
+        {
+            if (constraint_of[seed] != -1
+                    || adjacent[seed].length < MIN_CONSTRAINT_SIZE - 1
+                    || budget <= 0)
+            {
+                continue;
+            }
+            Integer[] candidates = new Integer[adjacent[seed].length];
+            for (int i = 0; i < candidates.length; i++)
+            {
+                candidates[i] = adjacent[seed][i];
+            }
+            Arrays.sort(candidates, new Comparator<Integer>()
+            {
+                @Override
+                public int compare(Integer first, Integer second)
+                {
+                    return degrees[second].length - degrees[first].length;
+                }
+            });
+            clique.clear();
+            clique.add(seed);
+            for (int candidate : candidates)
+            {
+                if (constraint_of[candidate] != -1)
+                {
+                    continue;
+                }
+                boolean fits = true;
+                for (int i = 1; i < clique.size() && fits; i++)
+                {
+                    budget--;
+                    fits = Arrays.binarySearch(adjacent[candidate],
+                            clique.get(i)) >= 0;
+                }
+                if (fits)
+                {
+                    clique.add(candidate);
+                }
+            }
+            if (clique.size() >= MIN_CONSTRAINT_SIZE)
+            {
+                int[] literals = new int[clique.size()];
+                for (int i = 0; i < literals.length; i++)
+                {
+                    constraint_of[clique.get(i)] = cliques.size();
+                    literals[i] = Literals.literal(clique.get(i));
+                }
+                cliques.add(literals);
+            }
+        }
+        if (cliques.isEmpty())
+        {
+            return null;
+        }
+
+        int[][] constraints = cliques.toArray(new int[cliques.size()][]);
+        int[] bounds = new int[constraints.length];
+        Arrays.fill(bounds, 1);
+        return new CardinalitySystem(variables, constraints, bounds,
+                !hasMatching(formula, constraint_of, constraints.length));
+    }
+
+    /**
+     * Tests whether the clauses whose literals all lie in at-most-one
+     * constraints can each be given a different constraint that holds one of
+     * their literals. Only clauses that share no literal with a clause that
+     * was taken before are used, since two clauses that share a literal can
+     * be satisfied by the same true literal.
+     *
+     * @param formula the formula.
+     * @param constraint_of the constraint of every literal node, or -1.
+     * @param constraint_count the number of constraints.
+     * @return false if some clause cannot be matched, which means the
+     * formula is unsatisfiable; true if every clause was matched or the
+     * search ran out of budget.
+     */
+    private static boolean hasMatching(Formula formula, int[] constraint_of,
+            int constraint_count)
+    {
+        boolean[] used = new boolean[constraint_of.length];
+        List<int[]> clauses = new ArrayList<int[]>();
+        for (int i = 0; i < formula.getOriginalClauseCount(); i++)
+        {
+            int[] clause = formula.getOriginalClause(i);
+            boolean usable = clause.length > 0;
+            for (int j = 0; j < clause.length && usable; j++)
+            {
+                int node = Literals.code(clause[j]);
+                usable = constraint_of[node] != -1 && !used[node];
+            }
+            if (!usable)
+            {
+                continue;
+            }
+            int[] targets = new int[clause.length];
+            for (int j = 0; j < clause.length; j++)
+            {
+                used[Literals.code(clause[j])] = true;
+                targets[j] = constraint_of[Literals.code(clause[j])];
+            }
+            clauses.add(targets);
+        }
+
+        // Find an augmenting path for every clause with a breadth-first
+        // search from the clause through the constraints it can take.
+        int[] matched_clause = new int[constraint_count];
+        Arrays.fill(matched_clause, -1);
+        int[] parent = new int[clauses.size()];
+        int[] via = new int[clauses.size()];
+        int[] queue = new int[clauses.size()];
+        int[] visited = new int[clauses.size()];
+        long budget = MATCHING_BUDGET;
+        for (int start = 0; start < clauses.size(); start++)
+        {
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            visited[start] = start + 1;
+            int free = -1;
+            int last = start;
+            while (head < tail && free == -1)
+            {
+                if (--budget < 0)
+                {
+                    return true;
+                }
+                int clause = queue[head++];
+                int[] targets = clauses.get(clause);
+                for (int j = 0; j < targets.length; j++)
+                {
+                    int owner = matched_clause[targets[j]];
+                    if (owner == -1)
+                    {
+                        free = targets[j];
+                        last = clause;
+                        break;
+                    }
+                    if (visited[owner] != start + 1)
+                    {
+                        visited[owner] = start + 1;
+                        parent[owner] = clause;
+                        via[owner] = targets[j];
+                        queue[tail++] = owner;
+                    }
+                }
+            }
+            if (free == -1)
+            {
+                return false;
+            }
+            // Move every clause on the path to the constraint after it, which
+            // frees its old constraint for the clause before it.
+            while (last != start)
+            {
+                int old_constraint = via[last];
+                matched_clause[free] = last;
+                free = old_constraint;
+                last = parent[last];
+            }
+            matched_clause[free] = start;
+        }
+        return true;
+    }
+
+    /**
+     * Tests whether the counting argument proved the formula unsatisfiable.
+     *
+     * @return true if the formula is unsatisfiable.
+     */
+    boolean isContradictory()
+    {
+        return contradictory;
+    }
+
+    /**
+     * Get the number of constraints.
+     *
+     * @return the number of constraints.
+     */
+    int size()
+    {
+        return constraints.length;
+    }
+
+    /**
+     * Get the literals of a constraint. The array must not be modified.
+     *
+     * @param constraint the index of the constraint.
+     * @return the literals of the constraint.
+     */
+    int[] getLiterals(int constraint)
+    {
+        return constraints[constraint];
+    }
+
+    /**
+     * Get the largest number of literals of a constraint that may be true.
+     *
+     * @param constraint the index of the constraint.
+     * @return the bound of the constraint.
+     */
+    int getBound(int constraint)
+    {
+        return bounds[constraint];
+    }
+
+    /**
+     * Get the constraints that contain a literal.
+     *
+     * @param literal the literal, negative if the variable is negated.
+     * @return the indices of the constraints.
+     */
+    IntList getConstraints(int literal)
+    {
+        return containing[Literals.code(literal)];
+    }
+
+    /**
+     * Tests whether a binary clause is one of the pairs that an at-most-one
+     * constraint stands for, so that it does not have to be propagated.
+     *
+     * @param first a literal of the clause.
+     * @param second the other literal of the clause.
+     * @return true if the negations of both literals are in the same
+     * at-most-one constraint.
+     */
+    boolean covers(int first, int second)
+    {
+        IntList constraints_of_first = containing[Literals.code(-first)];
+        IntList constraints_of_second = containing[Literals.code(-second)];
+        for (int i = 0; i < constraints_of_first.size(); i++)
+        {
+            int constraint = constraints_of_first.get(i);
+            if (bounds[constraint] != 1)
+            {
+                continue;
+            }
+            for (int j = 0; j < constraints_of_second.size(); j++)
+            {
+                if (constraints_of_second.get(j) == constraint)
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,388 @@
+package dp_solver;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * ClauseArena stores clauses back to back in one growable block of ints, so
+ * that a clause is not an object of its own and the clauses visited during
+ * propagation lie close together in memory. A clause is referred to by the
+ * offset of its header in the block. The header holds the number of literals
+ * and a word with the clause's flags and literal block distance, and the
+ * literals follow it.
+ *
+ * Literals are stored as their codes from Literals, the same numbering as
+ * the watch lists, so no absolute value is needed to index an array with
+ * them.
+ *
+ * Deleting a clause only marks it. Once enough of the block is taken by
+ * deleted clauses, compact() moves the remaining clauses to the front, after
+ * which relocate() gives the new offset of every remaining clause.
+ *
+ * The words are kept either in an int array on the heap or in a direct buffer
+ * outside it. The storage can be changed once the clauses have been read, so
+ * that the clauses of a large formula do not add to the heap the garbage
+ * collector has to manage during the search. Only the small buffer object is
+ * on the heap, and the memory of a buffer that has been outgrown is released
+ * when that object is collected.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class ClauseArena
+{
+
+    /**
+     * Stores the headers and literals of the clauses on the heap, or null if
+     * they are stored in the buffer.
+     */
+    private int[] words;
+    /**
+     * Stores the headers and literals of the clauses outside the heap, or
+     * null if they are stored in the array.
+     */
+    private IntBuffer buffer;
+    /**
+     * The number of words in use.
+     */
+    private int size;
+    /**
+     * The number of words used by deleted clauses.
+     */
+    private int wasted;
+    /**
+     * The offsets the clauses had before the last compaction, in increasing
+     * order.
+     */
+    private int[] old_offsets;
+    /**
+     * The offsets the clauses got in the last compaction.
+     */
+    private int[] new_offsets;
+    /**
+     * The number of words in front of the literals of a clause.
+     */
+    static final int HEADER_WORDS = 2;
+    /**
+     * The flag of a clause that was learned rather than read from the input.
+     */
+    private static final int LEARNED = 1;
+    /**
+     * The flag of a clause that has been deleted.
+     */
+    private static final int DELETED = 2;
+    /**
+     * The number of low bits of the flag word used by flags. The literal
+     * block distance takes the bits above them.
+     */
+    private static final int FLAG_BITS = 2;
+    /**
+     * The number of words an empty arena has room for.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Initializes an empty arena on the heap.
+     */
+    ClauseArena()
+    {
+        this.words = new int[INITIAL_CAPACITY];
+        this.buffer = null;
+        this.size = 0;
+        this.wasted = 0;
+        this.old_offsets = new int[0];
+        this.new_offsets = new int[0];
+    }
+
+    /**
+     * Moves the words into another kind of memory.
+     *
+     * @param storage the kind of memory to keep the words in.
+     */
+    void setStorage(ClauseStorage storage)
+    {
+        if ((storage == ClauseStorage.DIRECT) != (buffer != null))
+        {
+            resize(Math.max(INITIAL_CAPACITY, size),
+                    storage == ClauseStorage.DIRECT);
+        }
+    }
+
+    /**
+     * Moves the words in use into new memory.
+     *
+     * @param capacity the number of words the new memory holds.
+     * @param direct true to move them outside the heap.
+     */
+    private void resize(int capacity, boolean direct)
+    {
+        int[] new_words = direct ? null : new int[capacity];
+        IntBuffer new_buffer = direct ? ByteBuffer.allocateDirect(4 * capacity)
+                .order(ByteOrder.nativeOrder()).asIntBuffer() : null;
+        for (int i = 0; i < size; i++)
+        {
+            int word = word(i);
+            if (direct)
+            {
+                new_buffer.put(i, word);
+            }
+            else
+            {
+                new_words[i] = word;
+            }
+        }
+        words = new_words;
+        buffer = new_buffer;
+    }
+
+    /**
+     * Get the number of words the memory holds.
+     *
+     * @return the capacity of the arena.
+     */
+    private int capacity()
+    {
+        return (buffer != null) ? buffer.capacity() : words.length;
+    }
+
+    /**
+     * Get a word of the arena.
+     *
+     * @param index the position of the word.
+     * @return the word.
+     */
+    private int word(int index)
+    {
+        return (buffer != null) ? buffer.get(index) : words[index];
+    }
+
+    /**
+     * Replaces a word of the arena.
+     *
+     * @param index the position of the word.
+     * @param word the new word.
+     */
+    private void setWord(int index, int word)
+    {
+        if (buffer != null)
+        {
+            buffer.put(index, word);
+        }
+        else
+        {
+            words[index] = word;
+        }
+    }
+
+    /**
+     * Adds a clause to the end of the arena.
+     *
+     * @param clause the literals of the clause.
+     * @param lbd the literal block distance of the clause.
+     * @param learned true if the clause was learned.
+     * @return the offset of the clause.
+     */
+    int allocate(int[] clause, int lbd, boolean learned)
+    {
+        int needed = size + HEADER_WORDS + clause.length;
+        if (needed > capacity())
+        {
+            resize(Math.max(needed, 2 * capacity()), buffer != null);
+        }
+        int offset = size;
+        setWord(offset, clause.length);
+        setWord(offset + 1, (lbd << FLAG_BITS) | (learned ? LEARNED : 0));
+        for (int i = 0; i < clause.length; i++)
+        {
+            setWord(offset + HEADER_WORDS + i, Literals.code(clause[i]));
+        }
+        size = needed;
+        return offset;
+    }
+
+    /**
+     * Get the number of literals in a clause.
+     *
+     * @param offset the offset of the clause.
+     * @return the number of literals.
+     */
+    int length(int offset)
+    {
+        return word(offset);
+    }
+
+    /**
+     * Get the code of a literal of a clause.
+     *
+     * @param offset the offset of the clause.
+     * @param position the position of the literal in the clause.
+     * @return the code of the literal.
+     */
+    int get(int offset, int position)
+    {
+        return word(offset + HEADER_WORDS + position);
+    }
+
+    /**
+     * Replaces a literal of a clause.
+     *
+     * @param offset the offset of the clause.
+     * @param position the position of the literal in the clause.
+     * @param code the code of the new literal.
+     */
+    void set(int offset, int position, int code)
+    {
+        setWord(offset + HEADER_WORDS + position, code);
+    }
+
+    /**
+     * Exchanges two literals of a clause.
+     *
+     * @param offset the offset of the clause.
+     * @param first the position of one literal.
+     * @param second the position of the other literal.
+     */
+    void swap(int offset, int first, int second)
+    {
+        int code = word(offset + HEADER_WORDS + first);
+        setWord(offset + HEADER_WORDS + first,
+                word(offset + HEADER_WORDS + second));
+        setWord(offset + HEADER_WORDS + second, code);
+    }
+
+    /**
+     * Get the literals of a clause as a new array.
+     *
+     * @param offset the offset of the clause.
+     * @return the literals, negative if the variable is negated.
+     */
+    int[] getClause(int offset)
+    {
+        int[] clause = new int[word(offset)];
+        for (int i = 0; i < clause.length; i++)
+        {
+            clause[i] = Literals.literal(word(offset + HEADER_WORDS + i));
+        }
+        return clause;
+    }
+
+    /**
+     * Get the literal block distance of a clause.
+     *
+     * @param offset the offset of the clause.
+     * @return the literal block distance.
+     */
+    int getLbd(int offset)
+    {
+        return word(offset + 1) >>> FLAG_BITS;
+    }
+
+    /**
+     * Changes the literal block distance of a clause.
+     *
+     * @param offset the offset of the clause.
+     * @param lbd the new literal block distance.
+     */
+    void setLbd(int offset, int lbd)
+    {
+        setWord(offset + 1, (lbd << FLAG_BITS)
+                | (word(offset + 1) & ((1 << FLAG_BITS) - 1)));
+    }
+
+    /**
+     * Tests whether a clause was learned.
+     *
+     * @param offset the offset of the clause.
+     * @return true if the clause was learned.
+     */
+    boolean isLearned(int offset)
+    {
+        return (word(offset + 1) & LEARNED) != 0;
+    }
+
+    /**
+     * Deletes a clause. Its words stay in the arena until the next
+     * compaction.
+     *
+     * @param offset the offset of the clause.
+     */
+    void free(int offset)
+    {
+        int flags = word(offset + 1);
+        if ((flags & DELETED) == 0)
+        {
+            setWord(offset + 1, flags | DELETED);
+            wasted += HEADER_WORDS + word(offset);
+        }
+    }
+
+    /**
+     * Tests whether deleted clauses take up enough of the arena to make
+     * compaction worth its cost.
+     *
+     * @return true if compact() should be called.
+     */
+    boolean shouldCompact()
+    {
+        return wasted > size / 4;
+    }
+
+    /**
+     * Moves the clauses that were not deleted to the front of the arena,
+     * keeping their order, and releases memory that is no longer needed.
+     * Offsets taken before the compaction must be passed through relocate().
+     */
+    void compact()
+    {
+        IntList moved_from = new IntList();
+        IntList moved_to = new IntList();
+        int kept = 0;
+        int offset = 0;
+        while (offset < size)
+        {
+            int extent = HEADER_WORDS + word(offset);
+            if ((word(offset + 1) & DELETED) == 0)
+            {
+                // Copying upward through the clause never overwrites a word
+                // before it has been read, since kept is at most offset.
+                for (int i = 0; i < extent; i++)
+                {
+                    setWord(kept + i, word(offset + i));
+                }
+                moved_from.add(offset);
+                moved_to.add(kept);
+                kept += extent;
+            }
+            offset += extent;
+        }
+        size = kept;
+        wasted = 0;
+        if (capacity() > 4 * size)
+        {
+            resize(Math.max(INITIAL_CAPACITY, 2 * size), buffer != null);
+        }
+        old_offsets = moved_from.toArray();
+        new_offsets = moved_to.toArray();
+    }
+
+    /**
+     * Get the offset a clause was moved to by the last compaction.
+     *
+     * @param offset the offset of the clause before the compaction.
+     * @return the offset of the clause after the compaction.
+     * @throws IllegalArgumentException if the clause was deleted.
+     */
+    int relocate(int offset)
+    {
+        int position = Arrays.binarySearch(old_offsets, offset);
+        if (position < 0)
+        {
+            throw new IllegalArgumentException(
+                    "Clause at " + offset + " was deleted");
+        }
+        return new_offsets[position];
+    }
+}
@@ -0,0 +1,360 @@
+package dp_solver;
+
+import java.util.Arrays;
+
+/**
+ * ClauseDatabase stores the clauses learned by the Formula separately from
+ * the clauses read from the input. Every learned clause keeps its literal
+ * block distance (LBD) and an activity that is raised whenever the clause
+ * takes part in conflict analysis. From time to time the least useful half of
+ * the learned clauses is deleted so that memory and propagation cost do not
+ * grow without bound on long searches. The literals and LBD of the clauses
+ * are kept in the ClauseArena shared with the input clauses; the database
+ * keeps their offsets in the order the clauses were learned.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class ClauseDatabase
+{
+
+    /**
+     * Stores the clauses.
+     */
+    private final ClauseArena arena;
+    /**
+     * Stores the offset of each learned clause in the arena.
+     */
+    private int[] offsets;
+    /**
+     * Stores the activity of each learned clause.
+     */
+    private double[] activities;
+    /**
+     * The number of learned clauses.
+     */
+    private int size;
+    /**
+     * The estimated number of bytes used by the learned clauses.
+     */
+    private long memory;
+    /**
+     * The proof that deleted clauses are written to, or null.
+     */
+    private ProofWriter proof;
+    /**
+     * The number of bytes the learned clauses may use before they are reduced
+     * regardless of the schedule.
+     */
+    private final long memory_limit;
+    /**
+     * The amount a clause's activity is raised by. It grows after every
+     * conflict, which has the same effect as decaying older activities.
+     */
+    private double activity_increment;
+    /**
+     * The number of conflicts since the last reduction.
+     */
+    private int conflicts;
+    /**
+     * The number of conflicts allowed before the next reduction.
+     */
+    private int reduce_interval;
+    /**
+     * Clauses with a literal block distance this low are never deleted.
+     */
+    static final int CORE_LBD = 2;
+    /**
+     * The number of conflicts before the first reduction.
+     */
+    private static final int FIRST_REDUCE = 2000;
+    /**
+     * The number of conflicts added to the interval after every reduction.
+     */
+    private static final int REDUCE_INCREMENT = 300;
+    /**
+     * The factor by which older activities decay after every conflict.
+     */
+    private static final double ACTIVITY_DECAY = 0.999;
+    /**
+     * Activities are scaled down once one of them grows past this limit.
+     */
+    private static final double ACTIVITY_LIMIT = 1e20;
+    /**
+     * The number of bytes used by a clause besides its literals: its header
+     * in the arena, its offset and its activity.
+     */
+    private static final int CLAUSE_OVERHEAD
+            = 4 * ClauseArena.HEADER_WORDS + 4 + 8;
+
+    /**
+     * Initializes an empty database.
+     *
+     * @param arena the arena the learned clauses are stored in.
+     * @param memory_limit the number of bytes the learned clauses may use
+     * before they are reduced regardless of the schedule.
+     */
+    ClauseDatabase(ClauseArena arena, long memory_limit)
+    {
+        this.arena = arena;
+        this.offsets = new int[16];
+        this.activities = new double[16];
+        this.size = 0;
+        this.memory = 0;
+        this.memory_limit = memory_limit;
+        this.activity_increment = 1.0;
+        this.conflicts = 0;
+        this.reduce_interval = FIRST_REDUCE;
+        this.proof = null;
+    }
+
+    /**
+     * Writes every clause that is deleted from now on to a proof.
+     *
+     * @param proof the proof, or null to stop writing deletions.
+     */
+    void setProof(ProofWriter proof)
+    {
+        this.proof = proof;
+    }
+
+    /**
+     * Adds a learned clause and counts the conflict it was learned from.
+     *
+     * @param clause the learned clause.
+     * @param lbd the literal block distance of the clause.
+     * @return the index of the clause in the database.
+     */
+    int add(int[] clause, int lbd)
+    {
+        conflicts++;
+        return store(clause, lbd);
+    }
+
+    /**
+     * Adds a clause that was derived without a conflict, such as the
+     * explanation of a consequence of the XOR constraints.
+     *
+     * @param clause the derived clause.
+     * @param lbd the literal block distance of the clause.
+     * @return the index of the clause in the database.
+     */
+    int store(int[] clause, int lbd)
+    {
+        if (size == offsets.length)
+        {
+            offsets = Arrays.copyOf(offsets, 2 * size);
+            activities = Arrays.copyOf(activities, 2 * size);
+        }
+        offsets[size] = arena.allocate(clause, lbd, true);
+        activities[size] = activity_increment;
+        memory += CLAUSE_OVERHEAD + 4L * clause.length;
+        return size++;
+    }
+
+    /**
+     * Get the offset of a learned clause in the arena.
+     *
+     * @param index the index of the clause in the database.
+     * @return the offset of the clause.
+     */
+    int get(int index)
+    {
+        return offsets[index];
+    }
+
+    /**
+     * Get the number of learned clauses.
+     *
+     * @return the number of learned clauses.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Records that a learned clause took part in conflict analysis. Its
+     * activity is raised, and its literal block distance is lowered if the
+     * clause now links fewer decision levels than when it was learned.
+     *
+     * @param index the index of the clause in the database.
+     * @param lbd the current literal block distance of the clause.
+     */
+    void bump(int index, int lbd)
+    {
+        activities[index] += activity_increment;
+        if (activities[index] > ACTIVITY_LIMIT)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                activities[i] /= ACTIVITY_LIMIT;
+            }
+            activity_increment /= ACTIVITY_LIMIT;
+        }
+        if (lbd < arena.getLbd(offsets[index]))
+        {
+            arena.setLbd(offsets[index], lbd);
+        }
+    }
+
+    /**
+     * Makes every existing clause activity count for less than the activity
+     * gained after the next conflict.
+     */
+    void decayActivities()
+    {
+        activity_increment /= ACTIVITY_DECAY;
+    }
+
+    /**
+     * Tests whether the learned clauses are due to be reduced, either because
+     * enough conflicts have passed or because they use too much memory.
+     *
+     * @return true if reduce() should be called.
+     */
+    boolean shouldReduce()
+    {
+        return conflicts >= reduce_interval || memory > memory_limit;
+    }
+
+    /**
+     * Deletes the least useful half of the clauses that may be deleted and
+     * moves the remaining clauses to the front. Binary clauses, clauses with
+     * a literal block distance of at most CORE_LBD and locked clauses are
+     * kept. The others are ranked by literal block distance and then by
+     * activity. If the clauses still use more memory than allowed, every
+     * unlocked clause that is not binary is deleted.
+     *
+     * @param locked marks the clauses that are the reason for a current
+     * assignment and must not be deleted.
+     * @return the new index of every old clause, or -1 if it was deleted.
+     */
+    int[] reduce(boolean[] locked)
+    {
+        Integer[] candidates = new Integer[size];
+        int candidate_count = 0;
+        for (int i = 0; i < size; i++)
+        {
+            if (!locked[i] && arena.length(offsets[i]) > 2
+                    && arena.getLbd(offsets[i]) > CORE_LBD)
+            {
+                candidates[candidate_count++] = i;
+            }
+        }
+        Arrays.sort(candidates, 0, candidate_count,
+                new java.util.Comparator<Integer>()
+                {
+                    @Override
+                    public int compare(Integer first, Integer second)
+                    {
+                        int first_lbd = arena.getLbd(offsets[first]);
+                        int second_lbd = arena.getLbd(offsets[second]);
+                        if (first_lbd != second_lbd)
+                        {
+                            return second_lbd - first_lbd;
+                        }
+                        return Double.compare(activities[first],
+                                activities[second]);
+                    }
+                });
+
+        boolean[] deleted = new boolean[size];
+        for (int i = 0; i < candidate_count / 2; i++)
+        {
+            deleted[candidates[i]] = true;
+        }
+        if (memoryAfter(deleted) > memory_limit)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                deleted[i] = !locked[i] && arena.length(offsets[i]) > 2;
+            }
+        }
+
+        conflicts = 0;
+        reduce_interval += REDUCE_INCREMENT;
+        return compact(deleted);
+    }
+
+    /**
+     * Replaces a learned clause with an equivalent one, which is stored at
+     * the end of the arena.
+     *
+     * @param index the index of the clause in the database.
+     * @param clause the new clause.
+     */
+    void set(int index, int[] clause)
+    {
+        int old_offset = offsets[index];
+        memory += 4L * (clause.length - arena.length(old_offset));
+        offsets[index] = arena.allocate(clause, arena.getLbd(old_offset), true);
+        arena.free(old_offset);
+    }
+
+    /**
+     * Updates the offsets of the clauses after the arena was compacted.
+     */
+    void relocate()
+    {
+        for (int i = 0; i < size; i++)
+        {
+            offsets[i] = arena.relocate(offsets[i]);
+        }
+    }
+
+    /**
+     * Deletes the marked clauses from the arena and moves the remaining
+     * clauses to the front of the database.
+     *
+     * @param deleted marks the clauses to be deleted.
+     * @return the new index of every old clause, or -1 if it was deleted.
+     */
+    int[] compact(boolean[] deleted)
+    {
+        int[] new_indices = new int[size];
+        int kept = 0;
+        memory = 0;
+        for (int i = 0; i < size; i++)
+        {
+            if (deleted[i])
+            {
+                if (proof != null)
+                {
+                    proof.delete(arena, offsets[i]);
+                }
+                arena.free(offsets[i]);
+                new_indices[i] = -1;
+                continue;
+            }
+            new_indices[i] = kept;
+            offsets[kept] = offsets[i];
+            activities[kept] = activities[i];
+            memory += CLAUSE_OVERHEAD + 4L * arena.length(offsets[kept]);
+            kept++;
+        }
+        size = kept;
+        return new_indices;
+    }
+
+    /**
+     * Estimates the memory the learned clauses would use after deleting the
+     * marked clauses.
+     *
+     * @param deleted marks the clauses to be deleted.
+     * @return the estimated number of bytes.
+     */
+    private long memoryAfter(boolean[] deleted)
+    {
+        long remaining = 0;
+        for (int i = 0; i < size; i++)
+        {
+            if (!deleted[i])
+            {
+                remaining += CLAUSE_OVERHEAD + 4L * arena.length(offsets[i]);
+            }
+        }
+        return remaining;
+    }
+}
@@ -0,0 +1,116 @@
+package dp_solver;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * ClauseExchange lets the solvers of a portfolio share short learned clauses
+ * without locking. It is a ring buffer of fixed size: a solver claims the
+ * next slot with an atomic increment and writes its clause there, and every
+ * solver reads the slots written since it last looked. A solver that falls
+ * more than a buffer behind simply skips the clauses that were overwritten,
+ * since sharing is only a hint and the other solvers never wait for it.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class ClauseExchange
+{
+
+    /**
+     * A clause in the buffer together with the solver that learned it and
+     * its position in the sequence of all published clauses.
+     */
+    private static final class Entry
+    {
+
+        /**
+         * The position of the clause in the sequence of published clauses.
+         */
+        final long sequence;
+        /**
+         * The solver that published the clause.
+         */
+        final int source;
+        /**
+         * The literals of the clause.
+         */
+        final int[] clause;
+
+        /**
+         * Initializes an entry.
+         *
+         * @param sequence the position of the clause in the sequence.
+         * @param source the solver that published the clause.
+         * @param clause the literals of the clause.
+         */
+        Entry(long sequence, int source, int[] clause)
+        {
+            this.sequence = sequence;
+            this.source = source;
+            this.clause = clause;
+        }
+    }
+    /**
+     * Stores the most recently published clauses.
+     */
+    private final AtomicReferenceArray<Entry> slots;
+    /**
+     * The sequence number the next published clause will get.
+     */
+    private final AtomicLong next;
+
+    /**
+     * Initializes an empty exchange.
+     *
+     * @param capacity the number of clauses the buffer holds.
+     */
+    ClauseExchange(int capacity)
+    {
+        this.slots = new AtomicReferenceArray<Entry>(capacity);
+        this.next = new AtomicLong();
+    }
+
+    /**
+     * Shares a clause with the other solvers. The clause must not be changed
+     * afterwards.
+     *
+     * @param source the solver that learned the clause.
+     * @param clause the literals of the clause.
+     */
+    void publish(int source, int[] clause)
+    {
+        long sequence = next.getAndIncrement();
+        slots.set((int) (sequence % slots.length()),
+                new Entry(sequence, source, clause));
+    }
+
+    /**
+     * Collects the clauses that other solvers published since a solver last
+     * looked. The clauses must not be changed.
+     *
+     * @param reader the solver that is reading.
+     * @param position the sequence number the reader has read up to.
+     * @param clauses receives the clauses.
+     * @return the sequence number the reader has now read up to.
+     */
+    long collect(int reader, long position, List<int[]> clauses)
+    {
+        long end = next.get();
+        long start = Math.max(position, end - slots.length());
+        for (long sequence = start; sequence < end; sequence++)
+        {
+            Entry entry = slots.get((int) (sequence % slots.length()));
+            // The slot may not be written yet, or may already hold a newer
+            // clause.
+            if (entry != null && entry.sequence == sequence
+                    && entry.source != reader)
+            {
+                clauses.add(entry.clause);
+            }
+        }
+        return end;
+    }
+}
@@ -0,0 +1,58 @@
+package dp_solver;
+
+/**
+ * ClauseStorage names the kinds of memory the clause arena can keep its
+ * words in. Every kind propagates the same way; they differ only in where the
+ * memory lives and who manages it.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+enum ClauseStorage
+{
+
+    /**
+     * An int array on the Java heap.
+     */
+    HEAP("heap"),
+    /**
+     * A direct buffer outside the Java heap, which the garbage collector
+     * never copies or scans. Its size is limited by -XX:MaxDirectMemorySize.
+     */
+    DIRECT("direct");
+
+    /**
+     * The name of the storage on the command line.
+     */
+    private final String name;
+
+    /**
+     * Initializes the storage with its command-line name.
+     *
+     * @param name the name of the storage on the command line.
+     */
+    ClauseStorage(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Finds the storage with the given command-line name.
+     *
+     * @param name the name of the storage on the command line.
+     * @return the storage with that name.
+     * @throws IllegalArgumentException if no storage has that name.
+     */
+    static ClauseStorage forName(String name)
+    {
+        for (ClauseStorage storage : values())
+        {
+            if (storage.name.equals(name))
+            {
+                return storage;
+            }
+        }
+        throw new IllegalArgumentException("Unknown clause storage: " + name);
+    }
+}
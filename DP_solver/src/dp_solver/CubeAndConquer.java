@@ -0,0 +1,282 @@
+package dp_solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * CubeAndConquer splits a formula into cubes and solves them in parallel. A
+ * cube is a set of literals that are assumed true; the cubes are the leaves
+ * of a lookahead search tree of a fixed depth, so together they cover every
+ * assignment that the tree did not already refute. The branch variables of
+ * the tree are the ones that simplify the formula most whichever way they go,
+ * which tends to give cubes of similar difficulty.
+ *
+ * The cubes are solved by tasks of a ForkJoinPool, whose idle threads steal
+ * the work of busy ones. Every thread keeps one clause-learning solver and
+ * solves its cubes one after another under assumptions, so the clauses it
+ * learns on one cube help with the next. The formula is satisfiable as soon
+ * as one cube is, and unsatisfiable once every cube has been refuted.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class CubeAndConquer
+{
+
+    /**
+     * The settings of the search.
+     */
+    private final Options options;
+    /**
+     * The cubes to be solved.
+     */
+    private List<int[]> cubes;
+    /**
+     * Becomes true when a cube has been found satisfiable.
+     */
+    private final AtomicBoolean stopped;
+    /**
+     * The solver that found the formula satisfiable, or null.
+     */
+    private final AtomicReference<DP_solver> winner;
+    /**
+     * The solver of every thread of the pool.
+     */
+    private ThreadLocal<DP_solver> solvers;
+    /**
+     * The number of clauses the exchange buffer holds.
+     */
+    private static final int EXCHANGE_CAPACITY = 1 << 14;
+
+    /**
+     * Solves the cubes from one position of the list up to another. Ranges of
+     * more than one cube are split in half, and one half is forked so that
+     * another thread can steal it.
+     */
+    private final class CubeTask extends RecursiveTask<Boolean>
+    {
+
+        /**
+         * The version of the serialized form of the task.
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * The position of the first cube to be solved.
+         */
+        private final int from;
+        /**
+         * The position after the last cube to be solved.
+         */
+        private final int to;
+
+        /**
+         * Initializes a task for a range of cubes.
+         *
+         * @param from the position of the first cube.
+         * @param to the position after the last cube.
+         */
+        CubeTask(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Solves the cubes of the range.
+         *
+         * @return true if one of the cubes is satisfiable.
+         */
+        @Override
+        protected Boolean compute()
+        {
+            if (to - from == 1)
+            {
+                return solveCube(cubes.get(from));
+            }
+            int middle = (from + to) >>> 1;
+            CubeTask first = new CubeTask(from, middle);
+            first.fork();
+            boolean second = new CubeTask(middle, to).compute();
+            return first.join() || second;
+        }
+    }
+
+    /**
+     * Initializes a cube-and-conquer search.
+     *
+     * @param options the settings of the search, including the depth of the
+     * cubes and the number of threads.
+     */
+    CubeAndConquer(Options options)
+    {
+        this.options = options;
+        this.stopped = new AtomicBoolean();
+        this.winner = new AtomicReference<DP_solver>();
+    }
+
+    /**
+     * Splits the formula into cubes, solves them in parallel and prints the
+     * answer.
+     *
+     * @param file_name the name of the file from which the formula is read.
+     */
+    void solve(final String file_name)
+    {
+        Options splitting = options.copy();
+        splitting.cdcl = true;
+        splitting.heuristic = Heuristic.LOOKAHEAD;
+        DP_solver splitter = new DP_solver(splitting);
+        splitter.readFormula(file_name);
+        cubes = new ArrayList<int[]>();
+        split(splitter.formula, new IntList(), options.cube_depth);
+        if (cubes.isEmpty())
+        {
+            // The lookahead refuted every branch of the tree.
+            splitter.failure(splitter.formula);
+            return;
+        }
+
+        final Options solving = options.copy();
+        solving.cdcl = true;
+        final AtomicInteger workers = new AtomicInteger();
+        final ClauseExchange exchange = options.share
+                ? new ClauseExchange(EXCHANGE_CAPACITY) : null;
+        solvers = new ThreadLocal<DP_solver>()
+        {
+            @Override
+            protected DP_solver initialValue()
+            {
+                DP_solver solver = new DP_solver(solving,
+                        workers.getAndIncrement(), stopped, exchange);
+                solver.readFormula(file_name);
+                return solver;
+            }
+        };
+        ForkJoinPool pool = new ForkJoinPool(options.getThreads());
+        try
+        {
+            pool.invoke(new CubeTask(0, cubes.size()));
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+        DP_solver solved = winner.get();
+        if (solved != null)
+        {
+            solved.success(solved.formula);
+        }
+        else
+        {
+            splitter.failure(splitter.formula);
+        }
+    }
+
+    /**
+     * Adds the cubes below a node of the lookahead tree. Every node first
+     * probes the formula under its cube; failed values that probing finds are
+     * learned, and if they refute the cube the node adds nothing.
+     *
+     * @param formula the formula being split.
+     * @param cube the literals decided on the way to the node.
+     * @param depth the number of levels left below the node.
+     */
+    private void split(Formula formula, IntList cube, int depth)
+    {
+        if (!assume(formula, cube))
+        {
+            return;
+        }
+        while (depth > 0 && !formula.isEmpty() && formula.probe())
+        {
+            // Probing either learned a failed value, which may have undone
+            // some of the cube, or satisfied every clause with one more
+            // decision.
+            if (!formula.isEmpty() && !assume(formula, cube))
+            {
+                return;
+            }
+        }
+        if (depth == 0 || formula.isEmpty())
+        {
+            cubes.add(cube.toArray());
+            return;
+        }
+
+        int var = formula.getNextVariable();
+        int literal = formula.getNextValue(var) ? var + 1 : -(var + 1);
+        cube.add(literal);
+        split(formula, cube, depth - 1);
+        cube.set(cube.size() - 1, -literal);
+        split(formula, cube, depth - 1);
+        cube.shrink(cube.size() - 1);
+    }
+
+    /**
+     * Decides the literals of a cube from level 0, skipping those that are
+     * already true.
+     *
+     * @param formula the formula being split.
+     * @param cube the literals to be decided.
+     * @return false if the formula has a dead end under the cube.
+     */
+    private static boolean assume(Formula formula, IntList cube)
+    {
+        formula.backtrack(0);
+        for (int i = 0; i < cube.size() && !formula.hasDeadEndClause(); i++)
+        {
+            int literal = cube.get(i);
+            int value = formula.literalValue(literal);
+            if (value == Formula.FALSE)
+            {
+                return false;
+            }
+            if (value == Formula.UNSET)
+            {
+                formula.setTruthValue(Math.abs(literal) - 1, literal > 0);
+            }
+        }
+        return !formula.hasDeadEndClause();
+    }
+
+    /**
+     * Solves one cube with the solver of the current thread. Once a cube has
+     * been found satisfiable, the remaining cubes are skipped and the solvers
+     * still searching give up.
+     *
+     * @param cube the literals of the cube.
+     * @return true if the cube is satisfiable.
+     */
+    private boolean solveCube(int[] cube)
+    {
+        if (stopped.get())
+        {
+            return false;
+        }
+        DP_solver solver = solvers.get();
+        try
+        {
+            if (solver.solveCube(cube))
+            {
+                if (winner.compareAndSet(null, solver))
+                {
+                    stopped.set(true);
+                }
+                return true;
+            }
+            return false;
+        }
+        catch (CancellationException ex)
+        {
+            // Another cube was satisfiable.
+            return false;
+        }
+    }
+}
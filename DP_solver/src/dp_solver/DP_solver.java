@@ -1,11 +1,29 @@
 package dp_solver;
 
+import static java.lang.Math.abs;
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * DP_solver attempts to satisfy a Conjunctive Normal Form formula with the
  * Davis-Putnam backtracking algorithm.
  *
+ * Besides solving a formula read from a file, a solver can be used
+ * incrementally: clauses are given with addClause(), and solve(int...)
+ * decides the formula under assumed literals as often as needed, with more
+ * clauses added in between. Each call reuses the clauses, activities and
+ * phases learned by the calls before it. After a call, getModel() gives the
+ * solution, or getFailedAssumptions() gives assumptions that cannot all hold.
+ *
  * @author Kevin Dittmar
  * @author Jonathan Frederickson
  * @author Andrew Genova
@@ -17,10 +35,107 @@ public class DP_solver
      * The formula to be solved by the Davis-Putnam algorithm.
      */
     Formula formula;
+    /**
+     * The number of restarts between two searches for equivalent variables.
+     */
+    private static final int SUBSTITUTION_INTERVAL = 8;
+    /**
+     * Learned clauses with at most this many variables are shared with the
+     * other solvers of a portfolio.
+     */
+    private static final int MAX_SHARED_LENGTH = 8;
+    /**
+     * Learned clauses with at most this many decision levels are shared with
+     * the other solvers of a portfolio.
+     */
+    private static final int MAX_SHARED_LBD = 3;
+    /**
+     * The settings that control how the formula is solved.
+     */
+    private final Options options;
+    /**
+     * The number of this solver in its portfolio.
+     */
+    private final int worker;
+    /**
+     * Becomes true when another solver of the portfolio has found the
+     * answer, or null if this solver runs alone.
+     */
+    private final AtomicBoolean stopped;
+    /**
+     * The buffer through which the solvers of a portfolio share learned
+     * clauses, or null if clauses are not shared.
+     */
+    private final ClauseExchange exchange;
+    /**
+     * The sequence number of the shared clauses this solver has read up to.
+     */
+    private long shared_position;
+    /**
+     * The clauses given to addClause() since the last incremental solve, or
+     * null if the solver has not been used incrementally.
+     */
+    private List<int[]> added_clauses;
+    /**
+     * The solution found by the last incremental solve, or null.
+     */
+    private boolean[] model;
+    /**
+     * The assumptions that made the last incremental solve fail.
+     */
+    private int[] failed_assumptions;
+    /**
+     * The DRAT proof the search writes, or null.
+     */
+    private ProofWriter proof;
+
+    /**
+     * Creates a solver that uses the chronological backtracking of dp().
+     */
+    public DP_solver()
+    {
+        this(new Options());
+    }
+
+    /**
+     * Creates a solver with the given settings.
+     *
+     * @param options the settings that control how the formula is solved.
+     */
+    DP_solver(Options options)
+    {
+        this(options, 0, null, null);
+    }
+
+    /**
+     * Creates one solver of a portfolio. It reads its own copy of the
+     * formula, so it shares no search state with the other solvers.
+     *
+     * @param options the settings that control how the formula is solved.
+     * @param worker the number of the solver in the portfolio.
+     * @param stopped becomes true when the search should be given up.
+     * @param exchange the buffer for sharing learned clauses, or null.
+     */
+    DP_solver(Options options, int worker, AtomicBoolean stopped,
+            ClauseExchange exchange)
+    {
+        this.options = options;
+        this.worker = worker;
+        this.stopped = stopped;
+        this.exchange = exchange;
+        this.shared_position = 0;
+        this.added_clauses = null;
+        this.model = null;
+        this.failed_assumptions = new int[0];
+        this.proof = null;
+    }
 
     /**
      * Takes file_name, gets an input file with the given file_name and then
-     * parses the input.
+     * parses the input. Unless preprocessing is turned off, the parsed
+     * formula is simplified before it is searched. XOR and at-most-one
+     * constraints are looked for in the parsed formula, before preprocessing
+     * can break up the clauses that encode them.
      *
      * @param file_name the name of the file containing the formula.
      */
@@ -28,7 +143,44 @@ public class DP_solver
     {
         File input = new File(file_name);
         Parser parser = new Parser(input);
-        formula = parser.parseFile();
+        prepareFormula(parser.parseFile());
+    }
+
+    /**
+     * Sets up a formula that was already parsed to be searched, the way
+     * readFormula() does.
+     *
+     * @param parsed the formula, as read from the input.
+     */
+    void prepareFormula(Formula parsed)
+    {
+        formula = parsed;
+        XorSystem xors = null;
+        if (options.isXorReasoning())
+        {
+            xors = XorSystem.detect(formula);
+        }
+        CardinalitySystem cardinalities = null;
+        if (options.cardinality)
+        {
+            cardinalities = CardinalitySystem.detect(formula);
+        }
+        if (options.isPreprocessing())
+        {
+            formula = new Preprocessor(formula).simplify();
+        }
+        formula.setClauseStorage(options.storage);
+        formula.setHeuristic(options.getHeuristic());
+        if (options.seed != 0)
+        {
+            formula.perturbScores(options.seed);
+        }
+        formula.setPhase(options.isPhaseSaving(), options.getInitialPhase());
+        formula.setLearnedMemoryLimit(options.learned_megabytes << 20);
+        // The constraints store their clauses in the learned clause database,
+        // so they come after it is replaced.
+        formula.setXorSystem(xors);
+        formula.setCardinalitySystem(cardinalities);
     }
 
     /**
@@ -112,15 +264,51 @@ public class DP_solver
     }
 
     /**
-     * Calls dp() to solve and prints success or failure status
+     * Calls dp() or cdcl() to solve and prints success or failure status.
+     * If the options ask for a proof, it is complete before the status is
+     * printed.
      *
      * @param file_name the name of the file from which the formula is read.
+     * @throws IllegalArgumentException if the options ask for brute force and
+     * the formula has too many variables for it.
      */
     public void solve(String file_name)
     {
-        readFormula(file_name);
+        solve(new Parser(new File(file_name)).parseFile());
+    }
 
-        if (dp(formula))
+    /**
+     * Calls dp() or cdcl() to solve a formula that was already parsed and
+     * prints success or failure status.
+     *
+     * @param parsed the formula, as read from the input.
+     * @throws IllegalArgumentException if the options ask for brute force and
+     * the formula has too many variables for it.
+     */
+    void solve(Formula parsed)
+    {
+        if (options.brute
+                && parsed.getVariableCount() > BruteForce.MAX_VARIABLES)
+        {
+            throw new IllegalArgumentException("-brute decides formulas of up"
+                    + " to " + BruteForce.MAX_VARIABLES + " variables, not "
+                    + parsed.getVariableCount());
+        }
+        ResultCache cache = openCache();
+        byte[] digest = null;
+        if (cache != null)
+        {
+            digest = ResultCache.digest(parsed);
+            if (reportCached(cache, digest, parsed))
+            {
+                closeCache(cache);
+                return;
+            }
+        }
+        int variables = parsed.getVariableCount();
+        boolean satisfiable = search(parsed);
+        finishProof();
+        if (satisfiable)
         {
             success(formula);
         }
@@ -128,75 +316,934 @@ public class DP_solver
         {
             failure(formula);
         }
+        if (cache != null)
+        {
+            try
+            {
+                cache.store(digest, satisfiable ? formula.getModel() : null,
+                        variables);
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(DP_solver.class.getName()).log(Level.SEVERE,
+                        null, ex);
+            }
+            closeCache(cache);
+        }
     }
 
     /**
-     * Recursive backtracking solution
+     * Opens the result cache if the options ask for one.
      *
-     * @param formula the given formula
-     * @return false if branch does not work
+     * @return the cache, or null if there is none or it cannot be opened.
      */
-    boolean dp(Formula formula)
+    private ResultCache openCache()
     {
-        if (isEmpty(formula)) // First base case: solution found
+        if (options.cache_file == null)
         {
-            return true;
+            return null;
+        }
+        try
+        {
+            return new ResultCache(options.cache_file);
         }
-        else if (hasEmptyClause(formula)) // Second base case: dead end found
+        catch (IOException ex)
         {
+            Logger.getLogger(DP_solver.class.getName()).log(Level.SEVERE,
+                    null, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Prints success or failure status from the result cache, if it has the
+     * answer for the formula.
+     *
+     * @param cache the result cache.
+     * @param digest the digest of the formula.
+     * @param parsed the formula, as read from the input.
+     * @return true if the answer was in the cache and has been printed.
+     */
+    private boolean reportCached(ResultCache cache, byte[] digest,
+            Formula parsed)
+    {
+        ResultCache.Result cached;
+        try
+        {
+            cached = cache.lookup(digest, parsed);
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(DP_solver.class.getName()).log(Level.SEVERE,
+                    null, ex);
             return false;
         }
+        if (cached == null)
+        {
+            return false;
+        }
+        if (cached.model != null)
+        {
+            System.out.println("Formula is satisfiable");
+            System.out.println(Formula.formatSolution(cached.model));
+        }
         else
         {
-            // Pick a branch variable
-            int var = selectBranchVar(formula);
+            failure(parsed);
+        }
+        return true;
+    }
+
+    /**
+     * Closes the result cache.
+     *
+     * @param cache the result cache.
+     */
+    private static void closeCache(ResultCache cache)
+    {
+        try
+        {
+            cache.close();
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(DP_solver.class.getName()).log(Level.SEVERE,
+                    null, ex);
+        }
+    }
 
-            // Try to set var = false in the formula
-            setVar(var, formula, false);
+    /**
+     * Reads the formula and decides whether it is satisfiable with dp() or
+     * cdcl(), without printing anything.
+     *
+     * @param file_name the name of the file from which the formula is read.
+     * @return true if the formula is satisfiable.
+     * @throws CancellationException if the search was stopped.
+     */
+    boolean search(String file_name)
+    {
+        return search(new Parser(new File(file_name)).parseFile());
+    }
 
-            if (dp(formula))
+    /**
+     * Decides whether a formula that was already parsed is satisfiable,
+     * without printing anything.
+     *
+     * @param parsed the formula, as read from the input.
+     * @return true if the formula is satisfiable.
+     * @throws CancellationException if the search was stopped.
+     */
+    boolean search(Formula parsed)
+    {
+        prepareFormula(parsed);
+        startProof();
+        if (options.brute)
+        {
+            return bruteForce(formula);
+        }
+        if (options.sat4j)
+        {
+            return sat4j(formula);
+        }
+        if (options.local != null && localSearch(formula))
+        {
+            return true;
+        }
+        return options.cdcl ? cdcl(formula) : dp(formula);
+    }
+
+    /**
+     * Creates the proof file if the options ask for one and has the formula
+     * write its learned and deleted clauses to it.
+     */
+    private void startProof()
+    {
+        if (options.proof_file == null)
+        {
+            return;
+        }
+        try
+        {
+            proof = new ProofWriter(options.proof_file);
+            formula.setProof(proof);
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(DP_solver.class.getName()).log(Level.SEVERE,
+                    null, ex);
+        }
+    }
+
+    /**
+     * Writes the rest of the proof, if there is one, and closes its file.
+     */
+    private void finishProof()
+    {
+        if (proof == null)
+        {
+            return;
+        }
+        try
+        {
+            proof.close();
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(DP_solver.class.getName()).log(Level.SEVERE,
+                    null, ex);
+        }
+        formula.setProof(null);
+        proof = null;
+    }
+
+    /**
+     * Looks for a solution of the formula by local search, for as long as
+     * the options allow. A solution that is found is given to the formula as
+     * decisions. Otherwise the branch variables of the systematic search are
+     * first tried with the values of the best assignment the local search
+     * met.
+     *
+     * @param formula the given formula
+     * @return true if the formula holds a solution.
+     * @throws CancellationException if the search was stopped.
+     */
+    private boolean localSearch(Formula formula)
+    {
+        LocalSearch walker = new LocalSearch(formula, options.local,
+                options.seed);
+        long deadline = System.currentTimeMillis()
+                + options.local_milliseconds;
+        boolean found = walker.search(deadline, stopped);
+        checkStopped();
+        boolean[] values = walker.getBestAssignment();
+        if (found && assignModel(formula, values))
+        {
+            return true;
+        }
+        formula.setSavedPhases(values);
+        return false;
+    }
+
+    /**
+     * Decides the formula by trying every assignment of its variables. A
+     * solution that is found is given to the formula as decisions.
+     *
+     * @param formula the given formula
+     * @return true if the formula holds a solution.
+     */
+    private boolean bruteForce(Formula formula)
+    {
+        BruteForce brute = new BruteForce(formula);
+        return brute.solve() && assignModel(formula, brute.getModel());
+    }
+
+    /**
+     * Decides the formula with the SAT4J library. A solution that is found
+     * is given to the formula as decisions.
+     *
+     * @param formula the given formula
+     * @return true if the formula holds a solution.
+     * @throws IllegalStateException if SAT4J gave up before deciding.
+     */
+    private boolean sat4j(Formula formula)
+    {
+        SAT4JSolver solver = new SAT4JSolver(formula);
+        return solver.solve() && assignModel(formula, solver.getModel());
+    }
+
+    /**
+     * Gives the formula a solution found outside of its search, as decisions
+     * for the variables that have no value yet.
+     *
+     * @param formula the given formula
+     * @param values the truth value of every variable, where the value of
+     * variable v is at index v - 1.
+     * @return true if the decisions satisfy the formula, false if they were
+     * taken back because they do not.
+     */
+    private boolean assignModel(Formula formula, boolean[] values)
+    {
+        // Every value a decision propagates agrees with the solution.
+        for (int var = 0; var < values.length; var++)
+        {
+            if (formula.literalValue(var + 1) == Formula.UNSET)
+            {
+                setVar(var, formula, values[var]);
+            }
+        }
+        if (isEmpty(formula))
+        {
+            return true;
+        }
+        formula.backtrack(0);
+        return false;
+    }
+
+    /**
+     * Gives up the search if another solver has found the answer.
+     *
+     * @throws CancellationException if the search should stop.
+     */
+    private void checkStopped()
+    {
+        if (stopped != null && stopped.get())
+        {
+            throw new CancellationException("Solver " + worker + " stopped");
+        }
+    }
+
+    /**
+     * Adds the clauses that the other solvers of the portfolio shared since
+     * the last time this solver looked.
+     * Pre: decisionLevel() is 0.
+     *
+     * @param formula the given formula
+     * @return false if a shared clause shows that the formula is
+     * unsatisfiable.
+     */
+    private boolean importSharedClauses(Formula formula)
+    {
+        List<int[]> clauses = new ArrayList<int[]>();
+        shared_position = exchange.collect(worker, shared_position, clauses);
+        for (int[] clause : clauses)
+        {
+            if (!formula.addSharedClause(clause))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Backtracking solution that keeps its decisions on the formula's trail
+     * instead of the call stack. Every decision level first tries its branch
+     * variable with the value given by the formula's phase. When a dead end is
+     * found, the most recent level that has not tried the other value yet is
+     * popped off the trail and its variable is flipped. Levels that have
+     * already tried both values are popped as well.
+     *
+     * @param formula the given formula
+     * @return false if no branch works
+     */
+    boolean dp(Formula formula)
+    {
+        // flipped[level] is true once that level's variable has had both values.
+        boolean[] flipped = new boolean[formula.getVariableCount() + 1];
+        boolean lookahead = options.getHeuristic() == Heuristic.LOOKAHEAD;
+
+        while (true)
+        {
+            checkStopped();
+            if (isEmpty(formula)) // Solution found
             {
                 return true;
             }
-            else
+            else if (hasEmptyClause(formula)) // Dead end found
             {
-                // Unset var in the formula
+                formula.bumpConflict();
+                int level = formula.decisionLevel();
+                while (level > 0 && flipped[level])
+                {
+                    level--;
+                }
+                if (level == 0)
+                {
+                    // Every branch has been tried
+                    return false;
+                }
+
+                // The first value of var did not work.
+                // Unset var in the formula and try the other value
+                int var = formula.getDecisionVariable(level);
+                boolean value = formula.getDecisionValue(level);
                 unset(var, formula);
+                setVar(var, formula, !value);
+                flipped[level] = true;
+            }
+            else if (lookahead && formula.probe())
+            {
+                // A failed value was ruled out, so look at the formula again.
+                // Flags of levels popped by a backjump are reset when the
+                // levels are reused.
+            }
+            else
+            {
+                // Pick a branch variable and try its phase first
+                int var = selectBranchVar(formula);
+                setVar(var, formula, formula.getNextValue(var));
+                flipped[formula.decisionLevel()] = false;
+            }
+        }
+    }
 
-                // Setting var to false did not work.
-                // Now try var = true
-                setVar(var, formula, true);
+    /**
+     * Reads the formula and writes its solutions, as many as the options
+     * allow, as DIMACS value lines, followed by whether the formula is
+     * satisfiable and how many solutions were written.
+     * Pre: the options turn clause learning and preprocessing off, since
+     * enumerate() needs the chronological search and every variable of the
+     * input.
+     *
+     * @param file_name the name of the file from which the formula is read.
+     * @throws IllegalArgumentException if the projection names a variable
+     * that is not in the formula.
+     */
+    public void enumerate(String file_name)
+    {
+        readFormula(file_name);
+        int[] projection = options.projection;
+        if (projection == null)
+        {
+            projection = new int[formula.getVariableCount()];
+            for (int i = 0; i < projection.length; i++)
+            {
+                projection[i] = i + 1;
+            }
+        }
+        for (int variable : projection)
+        {
+            if (variable > formula.getVariableCount())
+            {
+                throw new IllegalArgumentException(
+                        "Variable " + variable + " is not in the formula");
+            }
+        }
 
-                if (dp(formula))
+        Writer sink = null;
+        try
+        {
+            sink = (options.output_file != null)
+                    ? new FileWriter(options.output_file)
+                    : new OutputStreamWriter(System.out);
+            ModelWriter models = new ModelWriter(sink, projection);
+            enumerate(formula, models, options.enumerate);
+            models.flush();
+            if (models.getWritten() > 0)
+            {
+                System.out.println("Formula is satisfiable");
+            }
+            else
+            {
+                failure(formula);
+            }
+            System.out.println("Solutions: " + models.getWritten());
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(DP_solver.class.getName()).log(Level.SEVERE,
+                    null, ex);
+        }
+        finally
+        {
+            if (options.output_file != null && sink != null)
+            {
+                try
                 {
-                    return true;
+                    sink.close();
+                }
+                catch (IOException ex)
+                {
+                    Logger.getLogger(DP_solver.class.getName()).log(
+                            Level.SEVERE, null, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Backtracking search that writes every solution instead of stopping at
+     * the first. It is dp() with the variables of the projection decided
+     * before any other. A solution is reached once the clauses are satisfied
+     * and every variable of the projection is set, deciding the ones that
+     * are still free. After writing it, the search resumes where it was,
+     * like at a dead end, but it also pops the levels that decided variables
+     * outside the projection: their other values could only lead to the
+     * same values of the projection again. Lookahead probing is not used,
+     * since its backjumps would lose which levels have tried both values.
+     *
+     * @param formula the given formula
+     * @param models the writer of the solutions and their projection.
+     * @param limit the largest number of solutions to write.
+     * @return the number of solutions written.
+     * @throws IOException if a solution cannot be written.
+     */
+    long enumerate(Formula formula, ModelWriter models, long limit)
+            throws IOException
+    {
+        boolean[] flipped = new boolean[formula.getVariableCount() + 1];
+        boolean[] projected = new boolean[formula.getVariableCount()];
+        for (int variable : models.getProjection())
+        {
+            projected[variable - 1] = true;
+        }
+        long written = 0;
+        while (written < limit)
+        {
+            checkStopped();
+            boolean dead_end = hasEmptyClause(formula);
+            int var = dead_end ? -1 : nextProjected(formula, models);
+            if (dead_end || (var == -1 && isEmpty(formula)))
+            {
+                if (dead_end)
+                {
+                    formula.bumpConflict();
                 }
                 else
                 {
-                    // Neither true nor false worked, so unset the branch
-                    // variable and head back
-                    unset(var, formula);
+                    models.write(formula);
+                    written++;
+                }
+                int level = formula.decisionLevel();
+                while (level > 0 && (flipped[level] || (!dead_end
+                        && !projected[formula.getDecisionVariable(level)])))
+                {
+                    level--;
+                }
+                if (level == 0)
+                {
+                    // Every branch has been tried
+                    return written;
+                }
+                var = formula.getDecisionVariable(level);
+                boolean value = formula.getDecisionValue(level);
+                unset(var, formula);
+                setVar(var, formula, !value);
+                flipped[level] = true;
+            }
+            else
+            {
+                if (var == -1)
+                {
+                    var = selectBranchVar(formula);
+                }
+                setVar(var, formula, formula.getNextValue(var));
+                flipped[formula.decisionLevel()] = false;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Get the first variable of the projection that is not set.
+     *
+     * @param formula the given formula
+     * @param models the writer that holds the projection.
+     * @return the index of the variable, or -1 if every one is set.
+     */
+    private static int nextProjected(Formula formula, ModelWriter models)
+    {
+        for (int variable : models.getProjection())
+        {
+            if (formula.literalValue(variable) == Formula.UNSET)
+            {
+                return variable - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Conflict-driven clause learning solution. Every dead end is analyzed to
+     * learn a clause that rules out the assignments that caused it. Instead
+     * of flipping the most recent decision, the search backjumps to the
+     * highest level at which the learned clause forces a variable, which may
+     * skip many decision levels at once. The restart policy may also send the
+     * search back to level 0, keeping everything it has learned, and the
+     * least useful learned clauses are deleted from time to time. Unless
+     * preprocessing is turned off, every few restarts the binary clauses are
+     * searched for equivalent variables to substitute. In a portfolio, short
+     * learned clauses are shared and the clauses of the other solvers are
+     * added at every restart.
+     *
+     * @param formula the given formula
+     * @return false if the formula is unsatisfiable
+     */
+    boolean cdcl(Formula formula)
+    {
+        return cdcl(formula, new int[0]);
+    }
+
+    /**
+     * Conflict-driven clause learning under assumptions. The assumed literals
+     * are decided in order before any other variable, and decided again
+     * whenever a backjump or restart unsets them. If one of them has become
+     * false, no assignment that makes all of them true satisfies the formula.
+     * The learned clauses follow from the formula alone, so the formula can
+     * be solved again under other assumptions. Equivalences are not
+     * substituted, since that could take an assumed variable or a variable
+     * of a clause added later out of the clauses.
+     *
+     * @param formula the given formula
+     * @param assumptions the literals that have to be true.
+     * @return true if the formula is satisfiable with every assumed literal
+     * true; false otherwise, in which case the assumptions that failed are
+     * recorded
+     */
+    boolean cdcl(Formula formula, int[] assumptions)
+    {
+        RestartPolicy restarts = new RestartPolicy(options.restart);
+        boolean lookahead = options.getHeuristic() == Heuristic.LOOKAHEAD;
+        while (true)
+        {
+            checkStopped();
+            if (hasEmptyClause(formula))
+            {
+                if (formula.decisionLevel() == 0)
+                {
+                    // The dead end does not depend on any decision
+                    if (proof != null)
+                    {
+                        proof.add(new int[0]);
+                    }
+                    return false;
+                }
+                int[] learned = formula.analyzeConflict();
+                int lbd = formula.computeLBD(learned);
+                restarts.conflict(lbd);
+                if (exchange != null && learned.length <= MAX_SHARED_LENGTH
+                        && lbd <= MAX_SHARED_LBD)
+                {
+                    exchange.publish(worker, learned.clone());
+                }
+                formula.backtrack(formula.getAssertingLevel(learned));
+                formula.addLearnedClause(learned, lbd);
+            }
+            else if (isEmpty(formula) && isAssumed(formula, assumptions))
+            {
+                return true;
+            }
+            else if (restarts.shouldRestart())
+            {
+                formula.backtrack(0);
+                restarts.restarted();
+                if (exchange != null && !importSharedClauses(formula))
+                {
+                    return false;
+                }
+                if (options.isPreprocessing() && assumptions.length == 0
+                        && added_clauses == null
+                        && restarts.getRestarts() % SUBSTITUTION_INTERVAL == 0
+                        && !formula.substituteEquivalences())
+                {
+                    return false;
+                }
+            }
+            else if (formula.shouldReduceLearnedClauses())
+            {
+                formula.reduceLearnedClauses();
+            }
+            else if (formula.decisionLevel() < assumptions.length
+                    && !isAssumed(formula, assumptions))
+            {
+                int next = nextAssumption(formula, assumptions);
+                if (formula.literalValue(assumptions[next]) == Formula.FALSE)
+                {
+                    failed_assumptions = formula.analyzeFinal(assumptions[next]);
                     return false;
                 }
+                setVar(abs(assumptions[next]) - 1, formula,
+                        assumptions[next] > 0);
+            }
+            else if (lookahead && formula.probe())
+            {
+                // A failed value was ruled out, so look at the formula again.
+            }
+            else
+            {
+                int var = selectBranchVar(formula);
+                setVar(var, formula, formula.getNextValue(var));
+            }
+        }
+    }
+
+    /**
+     * Solves the formula under the literals of a cube, so that the formula
+     * can be solved again under another cube afterwards. The formula is read
+     * before the first cube with readFormula().
+     *
+     * @param cube the literals that have to be true.
+     * @return true if the formula is satisfiable, in which case it keeps the
+     * solution; false if no solution makes every literal of the cube true.
+     * @throws CancellationException if the search was stopped.
+     */
+    boolean solveCube(int[] cube)
+    {
+        if (cdcl(formula, cube))
+        {
+            return true;
+        }
+        formula.backtrack(0);
+        return false;
+    }
+
+    /**
+     * Adds a clause to the formula of an incremental solver. It takes part in
+     * every later call of solve(int...).
+     *
+     * @param literals the literals of the clause. Variables are numbered
+     * from 1, and a negative number is a negated variable.
+     * @throws IllegalArgumentException if a literal is 0.
+     * @throws IllegalStateException if the solver read its formula from a
+     * file.
+     */
+    public void addClause(int... literals)
+    {
+        startIncremental();
+        for (int literal : literals)
+        {
+            if (literal == 0)
+            {
+                throw new IllegalArgumentException("0 is not a literal");
             }
         }
+        // A clause with a variable and its negation is always satisfied.
+        int[] clause = Literals.withoutRepeats(literals);
+        if (clause != null)
+        {
+            added_clauses.add(clause);
+        }
+    }
+
+    /**
+     * Decides whether the clauses added so far can all be satisfied with the
+     * given literals true. The search learns clauses and keeps them for the
+     * next call, along with activities and phases. Preprocessing and
+     * equivalence substitution are never used, since clauses added later
+     * could mention the variables they take out.
+     *
+     * @param assumptions the literals that have to be true.
+     * @return true if the formula is satisfiable under the assumptions.
+     * @throws IllegalArgumentException if an assumption is 0.
+     * @throws IllegalStateException if the solver read its formula from a
+     * file.
+     */
+    public boolean solve(int... assumptions)
+    {
+        startIncremental();
+        int variables = formula.getVariableCount();
+        for (int literal : assumptions)
+        {
+            if (literal == 0)
+            {
+                throw new IllegalArgumentException("0 is not a literal");
+            }
+            variables = Math.max(variables, abs(literal));
+        }
+        for (int[] clause : added_clauses)
+        {
+            for (int literal : clause)
+            {
+                variables = Math.max(variables, abs(literal));
+            }
+        }
+        formula.addVariables(variables);
+        if (!added_clauses.isEmpty())
+        {
+            // A clause that is false at level 0 is left as the dead end that
+            // cdcl() finds first.
+            formula.addInputClauses(added_clauses);
+            added_clauses.clear();
+        }
+
+        model = null;
+        failed_assumptions = new int[0];
+        boolean satisfiable = cdcl(formula, assumptions.clone());
+        if (satisfiable)
+        {
+            model = formula.getModel();
+        }
+        formula.backtrack(0);
+        return satisfiable;
+    }
+
+    /**
+     * Get the solution found by the last call of solve(int...).
+     *
+     * @return the truth value of every variable, where the value of variable
+     * v is at index v - 1.
+     * @throws IllegalStateException if the last call did not find the
+     * formula satisfiable.
+     */
+    public boolean[] getModel()
+    {
+        if (model == null)
+        {
+            throw new IllegalStateException("No solution was found");
+        }
+        return model.clone();
+    }
+
+    /**
+     * Get the assumptions that made the last call of solve(int...) fail. The
+     * clauses cannot be satisfied with all of them true, though they may be
+     * with some of the other assumptions false.
+     *
+     * @return the failed assumptions. An empty array means the clauses are
+     * unsatisfiable under any assumptions, or that the last call found the
+     * formula satisfiable.
+     */
+    public int[] getFailedAssumptions()
+    {
+        return failed_assumptions.clone();
+    }
+
+    /**
+     * Creates the empty formula of an incremental solver the first time it
+     * is needed. The formula always learns clauses, with the heuristic,
+     * phase and memory settings of the solver's options.
+     *
+     * @throws IllegalStateException if the solver read its formula from a
+     * file.
+     */
+    private void startIncremental()
+    {
+        if (added_clauses != null)
+        {
+            return;
+        }
+        if (formula != null)
+        {
+            throw new IllegalStateException(
+                    "The formula was read from a file");
+        }
+        Options settings = options.copy();
+        settings.cdcl = true;
+        formula = new Formula(0, 0);
+        formula.setClauseStorage(settings.storage);
+        formula.setHeuristic(settings.getHeuristic());
+        formula.setPhase(settings.isPhaseSaving(), settings.getInitialPhase());
+        formula.setLearnedMemoryLimit(settings.learned_megabytes << 20);
+        added_clauses = new ArrayList<int[]>();
+    }
+
+    /**
+     * Tests whether every assumed literal is true.
+     *
+     * @param formula the given formula
+     * @param assumptions the assumed literals.
+     * @return true if every assumed literal is true.
+     */
+    private static boolean isAssumed(Formula formula, int[] assumptions)
+    {
+        return nextAssumption(formula, assumptions) == assumptions.length;
+    }
+
+    /**
+     * Get the first assumed literal that is not true.
+     *
+     * @param formula the given formula
+     * @param assumptions the assumed literals.
+     * @return the position of the literal, or the number of assumptions if
+     * every one is true.
+     */
+    private static int nextAssumption(Formula formula, int[] assumptions)
+    {
+        int next = 0;
+        while (next < assumptions.length
+                && formula.literalValue(assumptions[next]) == Formula.TRUE)
+        {
+            next++;
+        }
+        return next;
     }
 
     /**
      * Main method - solves the file passed to it as an argument.
      *
-     * @param args contains the file with the cnf-formula in index 0
+     * @param args contains the options followed by the file with the
+     * cnf-formula
      */
     public static void main(String[] args)
     {
-        if (args.length < 1)
+        Options options = null;
+        try
         {
-            System.err.println("Usage: java DP_solver cnf-formula");
+            options = Options.parse(args);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            System.err.println(ex.getMessage());
+            System.err.println(Options.USAGE);
             System.exit(0);
         }
 
         long start_time = System.currentTimeMillis();
-        new DP_solver().solve(args[0]);
+        try
+        {
+            run(options);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            System.err.println(ex.getMessage());
+            System.err.println(Options.USAGE);
+            System.exit(0);
+        }
+        catch (IllegalStateException ex)
+        {
+            // The solver failed, so there is no answer to print.
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        }
         System.out.println(System.currentTimeMillis() - start_time);
     }
+
+    /**
+     * Solves the formula of the options with the engine they choose.
+     *
+     * @param options the options, with the name of the formula's file.
+     * @throws IllegalArgumentException if the formula does not suit the
+     * options or the rules of -auto cannot be read.
+     * @throws IllegalStateException if the engine failed without an answer.
+     */
+    static void run(Options options)
+    {
+        if (options.daemon_port > 0)
+        {
+            try
+            {
+                new SolverDaemon(options).serve();
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(DP_solver.class.getName()).log(Level.SEVERE,
+                        null, ex);
+            }
+        }
+        else if (options.auto)
+        {
+            try
+            {
+                new EngineSelector(options).solve(options.file_name);
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(DP_solver.class.getName()).log(Level.SEVERE,
+                        null, ex);
+            }
+        }
+        else if (options.count)
+        {
+            new ModelCounter(options).solve(options.file_name);
+        }
+        else if (options.enumerate > 0)
+        {
+            Options enumerating = options.copy();
+            enumerating.cdcl = false;
+            enumerating.preprocess = false;
+            new DP_solver(enumerating).enumerate(options.file_name);
+        }
+        else if (options.cube_depth > 0)
+        {
+            new CubeAndConquer(options).solve(options.file_name);
+        }
+        else if (options.portfolio > 1)
+        {
+            new Portfolio(options).solve(options.file_name);
+        }
+        else
+        {
+            new DP_solver(options).solve(options.file_name);
+        }
+    }
 }
@@ -0,0 +1,348 @@
+package dp_solver;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * EngineSelector picks the engine and settings for a formula from its
+ * InstanceFeatures, so that they do not have to be chosen by hand. The choice
+ * is made by a table of rules, each a list of conditions on the features and
+ * the command-line options to use when they all hold. The first rule whose
+ * conditions hold is taken.
+ *
+ * A rule is one line of the table: conditions such as "ratio<4.2" or
+ * "variables<=20", separated by spaces, then a colon and the options. A
+ * condition compares a feature with a number by one of <, <=, >, >= and =,
+ * and "*" holds for every formula. Lines that are empty or start with # are
+ * ignored. The default table below was set from the run times recorded on
+ * the inputs of this project and on random 3-SAT formulas, and sends the
+ * hardest random formulas to the SAT4J library the graph coloring project
+ * uses; a table read from a file with -rules replaces it, so the rules can be
+ * tuned to other benchmarks without changing the code.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class EngineSelector
+{
+
+    /**
+     * One line of the table: the conditions and the options they select.
+     */
+    private static final class Rule
+    {
+
+        /**
+         * The position in InstanceFeatures.NAMES of the feature of every
+         * condition.
+         */
+        private final int[] features;
+        /**
+         * The comparison of every condition.
+         */
+        private final String[] comparisons;
+        /**
+         * The number every feature is compared with.
+         */
+        private final double[] bounds;
+        /**
+         * The options the rule selects.
+         */
+        private final String[] options;
+
+        /**
+         * Reads a rule from a line of the table. A rule that selects -sat4j
+         * selects -cdcl instead if the SAT4J library is not on the classpath.
+         *
+         * @param line the line.
+         * @throws IllegalArgumentException if the line is not a rule, or it
+         * selects an option that only the command line may give.
+         */
+        Rule(String line)
+        {
+            int colon = line.indexOf(':');
+            if (colon < 0)
+            {
+                throw new IllegalArgumentException("Rule without ':': "
+                        + line);
+            }
+            String[] conditions = line.substring(0, colon).trim().split("\\s+");
+            String actions = line.substring(colon + 1).trim();
+            options = actions.isEmpty() ? new String[0]
+                    : actions.split("\\s+");
+            for (int i = 0; i < options.length; i++)
+            {
+                if (COMMAND_LINE_ONLY.contains(options[i]))
+                {
+                    throw new IllegalArgumentException("A rule cannot select "
+                            + options[i] + ": " + line);
+                }
+                if (options[i].equals("-sat4j") && !SAT4JSolver.isAvailable())
+                {
+                    // Without the library, clause learning takes its place.
+                    options[i] = "-cdcl";
+                }
+            }
+            List<String> kept = new ArrayList<String>();
+            for (String condition : conditions)
+            {
+                if (!condition.equals("*"))
+                {
+                    kept.add(condition);
+                }
+            }
+            features = new int[kept.size()];
+            comparisons = new String[kept.size()];
+            bounds = new double[kept.size()];
+            for (int i = 0; i < kept.size(); i++)
+            {
+                String condition = kept.get(i);
+                int start = 0;
+                while (start < condition.length()
+                        && "<>=".indexOf(condition.charAt(start)) < 0)
+                {
+                    start++;
+                }
+                int end = start;
+                while (end < condition.length()
+                        && "<>=".indexOf(condition.charAt(end)) >= 0)
+                {
+                    end++;
+                }
+                comparisons[i] = condition.substring(start, end);
+                if (!Arrays.asList("<", "<=", ">", ">=", "=")
+                        .contains(comparisons[i]))
+                {
+                    throw new IllegalArgumentException("Bad condition: "
+                            + condition);
+                }
+                features[i] = InstanceFeatures.indexOf(
+                        condition.substring(0, start));
+                try
+                {
+                    bounds[i] = Double.parseDouble(condition.substring(end));
+                }
+                catch (NumberFormatException ex)
+                {
+                    throw new IllegalArgumentException("Bad condition: "
+                            + condition);
+                }
+            }
+        }
+
+        /**
+         * Tests whether every condition of the rule holds for a formula.
+         *
+         * @param measured the features of the formula.
+         * @return true if the rule applies to the formula.
+         */
+        boolean matches(InstanceFeatures measured)
+        {
+            for (int i = 0; i < features.length; i++)
+            {
+                double value = measured.get(InstanceFeatures.NAMES[features[i]]);
+                boolean holds;
+                if (comparisons[i].equals("<"))
+                {
+                    holds = value < bounds[i];
+                }
+                else if (comparisons[i].equals("<="))
+                {
+                    holds = value <= bounds[i];
+                }
+                else if (comparisons[i].equals(">"))
+                {
+                    holds = value > bounds[i];
+                }
+                else if (comparisons[i].equals(">="))
+                {
+                    holds = value >= bounds[i];
+                }
+                else
+                {
+                    holds = value == bounds[i];
+                }
+                if (!holds)
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    /**
+     * The options that choose how the solver is run rather than how a formula
+     * is solved, which a rule may not select: a rule selecting -auto would
+     * select rules again without end.
+     */
+    private static final List<String> COMMAND_LINE_ONLY = Arrays.asList(
+            "-auto", "-rules", "-daemon", "-queue");
+    /**
+     * The default table of rules.
+     */
+    static final String[] DEFAULT_RULES =
+    {
+        "# Up to 14 variables, trying every assignment takes no longer",
+        "# than setting up the clause-learning search: 90 ms against 206 ms",
+        "# on a random 14-variable formula. From 15 variables it falls",
+        "# behind, 177 ms against 143 ms on u15 and 248 against 155 on s20.",
+        "variables<=14 : -brute",
+        "# Random 3-SAT below the threshold ratio of 4.26 is almost always",
+        "# satisfiable, and local search solved random 200-variable formulas",
+        "# with ratios 3.9 and 4.1 in 0.4 to 0.5 s, where clause learning took",
+        "# 0.5 to 1.3 s. At the threshold it saved 0.8 s on the satisfiable",
+        "# formulas but lost 1 s on the others, so it is left out there. If",
+        "# it does not find a solution soon, clause learning takes over.",
+        "ternary>=0.9 ratio<4.2 modularity<0.5 : -cdcl -local probsat -local-ms 1000",
+        "# At the threshold, random formulas of 250 variables and more are",
+        "# where SAT4J pulls ahead: at ratio 4.26 and 300 variables it took",
+        "# 3.1 and 3.3 s where clause learning took 5.9 and 28.7 s, and it",
+        "# refuted a formula in 57.5 s that clause learning had not finished",
+        "# in 60 s. At 250 variables it won 14.4 s to 18.7 s and lost 9.5 s",
+        "# to 6.2 s. On 100 to 200 variables it was even or up to 0.2 s",
+        "# slower, mostly from loading the library.",
+        "ternary>=0.9 ratio>=4.2 variables>=250 modularity<0.5 : -sat4j",
+        "# Everything else, including the pigeonhole, parity and structured",
+        "# inputs, is solved fastest by clause learning with its default",
+        "# preprocessing and constraint detection.",
+        "* : -cdcl"
+    };
+    /**
+     * The rules, in the order they are tried.
+     */
+    private final List<Rule> rules;
+    /**
+     * The options the selected ones are added to.
+     */
+    private final Options base;
+
+    /**
+     * Initializes a selector with the rules of the options' table, or the
+     * default rules.
+     *
+     * @param base the options the selected ones are added to, including the
+     * file of the table.
+     * @throws IllegalArgumentException if the table has a bad rule.
+     * @throws IOException if the table cannot be read.
+     */
+    EngineSelector(Options base) throws IOException
+    {
+        this.base = base;
+        List<String> lines = new ArrayList<String>();
+        if (base.rules_file == null)
+        {
+            lines.addAll(Arrays.asList(DEFAULT_RULES));
+        }
+        else
+        {
+            BufferedReader reader = new BufferedReader(
+                    new FileReader(base.rules_file));
+            try
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    lines.add(line);
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        rules = new ArrayList<Rule>();
+        for (String line : lines)
+        {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#"))
+            {
+                rules.add(new Rule(trimmed));
+            }
+        }
+    }
+
+    /**
+     * Get the options of the first rule that applies to a formula, added to
+     * the base options.
+     *
+     * @param features the features of the formula.
+     * @return the options to solve the formula with.
+     * @throws IllegalArgumentException if no rule applies, or the rule has a
+     * bad option.
+     */
+    Options select(InstanceFeatures features)
+    {
+        return select(find(features));
+    }
+
+    /**
+     * Get the options of a rule, added to the base options.
+     *
+     * @param rule the rule.
+     * @return the options to solve a formula with.
+     * @throws IllegalArgumentException if the rule has a bad option.
+     */
+    private Options select(Rule rule)
+    {
+        Options selected = base.copy();
+        selected.auto = false;
+        return Options.parse(rule.options, selected);
+    }
+
+    /**
+     * Reads a formula, measures it, and solves it with the engine the rules
+     * select. The engines that solve the formula with a single search are
+     * given the formula that was already read; the others read it again.
+     *
+     * @param file_name the name of the file containing the formula.
+     * @throws IllegalArgumentException if no rule applies, or the rule has a
+     * bad option.
+     */
+    void solve(String file_name)
+    {
+        Formula parsed = new Parser(new File(file_name)).parseFile();
+        InstanceFeatures features = new InstanceFeatures(parsed);
+        Rule rule = find(features);
+        Options selected = select(rule);
+        StringBuilder engine = new StringBuilder("c engine");
+        for (String option : rule.options)
+        {
+            engine.append(' ').append(option);
+        }
+        System.out.println("c features " + features);
+        System.out.println(engine);
+        if (selected.isSingleSearch())
+        {
+            new DP_solver(selected).solve(parsed);
+        }
+        else
+        {
+            DP_solver.run(selected);
+        }
+    }
+
+    /**
+     * Get the first rule that applies to a formula.
+     *
+     * @param features the features of the formula.
+     * @return the rule.
+     * @throws IllegalArgumentException if no rule applies.
+     */
+    private Rule find(InstanceFeatures features)
+    {
+        for (Rule rule : rules)
+        {
+            if (rule.matches(features))
+            {
+                return rule;
+            }
+        }
+        throw new IllegalArgumentException("No rule applies to the formula");
+    }
+}
@@ -2,11 +2,30 @@ package dp_solver;
 
 import static java.lang.Math.abs;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
 
 /**
  * Formula represents a Conjunctive Normal Form formula to be tested for
  * satisfiability.
  *
+ * Every clause with three or more variables is watched by two of its
+ * variables, which are always kept in the first two positions of the clause.
+ * When a variable is assigned, only the clauses watching the variable that
+ * just became false are visited. Those clauses either find a new variable to
+ * watch, become unit and force their other watched variable, or turn out to
+ * be dead ends.
+ *
+ * Clauses with two variables are kept out of the watch lists. Each of their
+ * variables instead lists the other variable as an implication, so a binary
+ * clause forces its other variable without its array being read. Implications
+ * are propagated for every assignment before any longer clause is visited.
+ *
+ * The clauses themselves live in a ClauseArena. Each clause keeps a number,
+ * which the watch lists, implication lists and reasons use, and the number
+ * is mapped to the offset of the clause in the arena.
+ *
  * @author Kevin Dittmar
  * @author Jonathan Frederickson
  * @author Andrew Genova
@@ -15,38 +34,231 @@ public class Formula
 {
 
     /**
-     * Stores the formula.
+     * Stores the literals of the input clauses and the learned clauses.
+     */
+    private final ClauseArena arena;
+    /**
+     * Stores the offset of every input clause in the arena.
+     */
+    private int[] clause_offsets;
+    /**
+     * The number of clauses read from the input. Learned clauses are numbered
+     * from here on and are stored in the learned clause database.
+     */
+    private int original_clauses;
+    /**
+     * Stores the clauses learned from dead ends.
+     */
+    private ClauseDatabase learned_clauses;
+    /**
+     * The proof that learned and deleted clauses are written to, or null.
+     */
+    private ProofWriter proof;
+    /**
+     * Holds the literals of the reason clause being read by conflict
+     * analysis.
      */
-    private int[][] formula;
+    private final IntList reason_buffer;
     /**
      * Stores the current list of truth values.
      */
     private int truth_values[];
     /**
-     * The next variable to be assigned.
+     * The lowest variable that may still be unassigned. Every variable before
+     * it has a truth value.
      */
     private int current_variable;
     /**
-     * Stores the clauses that are already satisfied.
+     * Stores, for every literal, the clauses that are watching it. The list
+     * for a literal is found with Literals.code().
+     */
+    private IntList[] watches;
+    /**
+     * Stores, for every literal, the binary clauses that contain it as pairs
+     * of the clause's other literal and the clause's index. The list for a
+     * literal is found with Literals.code().
+     */
+    private IntList[] implications;
+    /**
+     * The XOR constraints found in the input, or null if there are none.
+     */
+    private XorSystem xors;
+    /**
+     * The trail size at the last time the XOR constraints were eliminated,
+     * or -1 if they never have been.
+     */
+    private int xor_head;
+    /**
+     * The at-most-k constraints found in the input, or null if there are
+     * none.
+     */
+    private CardinalitySystem cardinalities;
+    /**
+     * Stores the number of true literals in every at-most-k constraint.
+     */
+    private int[] true_counts;
+    /**
+     * The position of the next assignment on the trail whose at-most-k
+     * constraints have not been checked yet.
+     */
+    private int cardinality_head;
+    /**
+     * Stores the position of every assigned variable on the trail.
+     */
+    private int[] trail_positions;
+    /**
+     * Stores, for every literal, the clauses that contain it. The list for a
+     * literal is found with Literals.code().
+     */
+    private IntList[] occurrences;
+    /**
+     * Stores the number of true variables in each clause. A clause is
+     * satisfied while its count is above 0.
      */
     private int[] satisfied_clauses;
+    /**
+     * The number of clauses that have no true variable.
+     */
+    private int unsatisfied_clauses;
+    /**
+     * Stores the assigned variables in the order they were assigned. A
+     * negative value means the variable was set to FALSE.
+     */
+    private int[] trail;
+    /**
+     * The number of assignments on the trail.
+     */
+    private int trail_size;
+    /**
+     * Stores, for every decision level, the position on the trail where that
+     * level starts. The assignment at that position is the decision variable
+     * of the level and everything after it was forced by propagation.
+     */
+    private int[] trail_limits;
+    /**
+     * The number of decisions currently on the trail.
+     */
+    private int decision_level;
+    /**
+     * Stores the decision level at which each variable was assigned.
+     */
+    private int[] variable_levels;
+    /**
+     * Stores, for every variable, the clause that forced its assignment, or
+     * NO_REASON if the variable was a decision.
+     */
+    private int[] reasons;
+    /**
+     * Marks the variables that have been visited by conflict analysis.
+     */
+    private boolean[] seen;
+    /**
+     * The position of the next assignment on the trail whose consequences
+     * have not been propagated yet.
+     */
+    private int propagation_head;
+    /**
+     * The position of the next assignment on the trail whose implications
+     * through binary clauses have not been propagated yet.
+     */
+    private int implication_head;
+    /**
+     * The clause that has all of its variables evaluating to false, or
+     * NO_CONFLICT if there is no such clause.
+     */
+    private int conflict_clause;
+    /**
+     * Stores the last truth value of every variable, which is reused the next
+     * time it is picked as a branch variable if phase saving is on.
+     */
+    private int[] saved_phases;
+    /**
+     * The truth value variables get when they have no saved phase.
+     */
+    private int initial_phase;
+    /**
+     * True if branch variables should be given their last truth value.
+     */
+    private boolean phase_saving;
+    /**
+     * Stores, for every decision level, the last time it was counted by
+     * computeLBD().
+     */
+    private int[] level_stamps;
+    /**
+     * The stamp used by the most recent call of computeLBD().
+     */
+    private int lbd_stamp;
+    /**
+     * Stores the clauses removed by preprocessing, each followed by the
+     * literal to make true if the clause is not satisfied and by the number
+     * of literals in the clause. They are replayed in reverse to give values
+     * to the variables that preprocessing eliminated.
+     */
+    private int[] reconstruction;
+    /**
+     * The way the next branch variable is chosen.
+     */
+    private Heuristic heuristic;
+    /**
+     * Stores the unassigned variables ordered by their branching score. It is
+     * not used by the ORDERED heuristic.
+     */
+    private VariableHeap order;
+    /**
+     * The variable picked by the last call to probe(), or -1.
+     */
+    private int lookahead_variable;
+    /**
+     * The amount a variable's activity is raised by when it takes part in a
+     * conflict. It grows after every conflict, which has the same effect as
+     * decaying every older activity.
+     */
+    private double activity_increment;
+    /**
+     * The factor by which older activities decay after every conflict.
+     */
+    private static final double ACTIVITY_DECAY = 0.95;
+    /**
+     * Activities are scaled down once one of them grows past this limit.
+     */
+    private static final double ACTIVITY_LIMIT = 1e100;
+    /**
+     * The largest number of variables probe() tries before a decision.
+     */
+    private static final int MAX_LOOKAHEAD_CANDIDATES = 64;
+    /**
+     * The largest random amount perturbScores() adds to a score.
+     */
+    private static final double SCORE_NOISE = 1e-3;
+    /**
+     * The weight of the product of the two reductions in a lookahead score.
+     * The sums only break ties between equal products.
+     */
+    private static final double LOOKAHEAD_PRODUCT_WEIGHT = 1024;
+    /**
+     * Named constant for the absence of a dead-end clause.
+     */
+    private static final int NO_CONFLICT = -1;
+    /**
+     * Named constant for assignments that were not forced by a clause.
+     */
+    private static final int NO_REASON = -1;
     /**
      * Named constant for unset truth values.
      */
-    private static final int UNSET = -1;
+    static final int UNSET = -1;
     /**
      * Named constant for false truth values.
      */
-    private static final int FALSE = 0;
+    static final int FALSE = 0;
     /**
      * Named constant for true truth values.
      */
-    private static final int TRUE = 1;
+    static final int TRUE = 1;
 
     /**
      * Initializes the formula with the given number of clauses and variables.
-     * The second dimension of the array will be variable length based on the
-     * number of variables in each clause.
      *
      * @param clauses the number of clauses that make up this formula.
      * @param variables the number of variables that are present in this
@@ -54,242 +266,1947 @@ public class Formula
      */
     public Formula(int clauses, int variables)
     {
-        this.formula = new int[clauses][];
+        this.arena = new ClauseArena();
+        this.clause_offsets = new int[clauses];
+        this.original_clauses = clauses;
+        this.learned_clauses = new ClauseDatabase(arena, Long.MAX_VALUE);
+        this.proof = null;
+        this.reason_buffer = new IntList();
         this.truth_values = new int[variables];
         Arrays.fill(this.truth_values, UNSET);
+        this.watches = new IntList[2 * variables];
+        this.implications = new IntList[2 * variables];
+        this.occurrences = new IntList[2 * variables];
+        for (int literal = 0; literal < watches.length; literal++)
+        {
+            watches[literal] = new IntList();
+            implications[literal] = new IntList();
+            occurrences[literal] = new IntList();
+        }
         this.satisfied_clauses = new int[clauses];
-        Arrays.fill(this.satisfied_clauses, 0);
+        this.unsatisfied_clauses = clauses;
+        this.trail = new int[variables];
+        this.trail_size = 0;
+        this.trail_limits = new int[variables + 1];
+        this.decision_level = 0;
+        this.variable_levels = new int[variables];
+        this.reasons = new int[variables];
+        this.seen = new boolean[variables];
+        this.propagation_head = 0;
+        this.implication_head = 0;
+        this.xors = null;
+        this.xor_head = -1;
+        this.cardinalities = null;
+        this.cardinality_head = 0;
+        this.trail_positions = new int[variables];
+        this.conflict_clause = NO_CONFLICT;
         this.current_variable = 0;
+        this.heuristic = Heuristic.ORDERED;
+        this.lookahead_variable = -1;
+        this.activity_increment = 1.0;
+        this.saved_phases = new int[variables];
+        Arrays.fill(this.saved_phases, FALSE);
+        this.initial_phase = FALSE;
+        this.phase_saving = false;
+        this.level_stamps = new int[variables + 1];
+        this.lbd_stamp = 0;
+        this.reconstruction = new int[0];
     }
 
     /**
-     * Tests all of the clauses in the formula to see if they are satisfied.
+     * Gives the formula the clauses that preprocessing removed, so that the
+     * solution can assign the variables they eliminated.
      *
-     * @return true if all clauses are satisfied.
+     * @param records the removed clauses in the order they were removed,
+     * each followed by the literal to make true if the clause is not
+     * satisfied and by the number of literals in the clause.
      */
-    boolean isEmpty()
+    void setReconstruction(int[] records)
     {
-        for (int clause = 0; clause < formula.length; clause++)
-        {
-            if (!clauseSatisfied(clause))
-            {
-                return false;
-            }
-        }
-        return true;
+        this.reconstruction = records;
     }
 
     /**
-     * Tests each clause in the formula to see if it's a dead end. If one clause
-     * is unsatisfiable with the current truth assignments, then the formula has
-     * a dead-end clause.
+     * Gives the formula XOR constraints that are implied by its clauses.
+     * They are eliminated together whenever propagation of the clauses
+     * comes to a stop, and their consequences are added as learned clauses.
      *
-     * @return true if the formula has a dead-end clause.
+     * @param xors the XOR constraints, or null for none.
      */
-    boolean hasDeadEndClause()
+    void setXorSystem(XorSystem xors)
+    {
+        this.xors = xors;
+        this.xor_head = -1;
+    }
+
+    /**
+     * Gives the formula at-most-k constraints that are implied by its
+     * clauses. Each constraint counts its true literals, and once a
+     * constraint is full its other literals are made false. The binary
+     * clauses that an at-most-one constraint stands for are no longer
+     * propagated on their own. A variable forced by a constraint has the
+     * constraint as its reason, and the clause that explains it is only
+     * built if conflict analysis asks for it.
+     * Pre: decisionLevel() is 0.
+     *
+     * @param cardinalities the at-most-k constraints, or null for none.
+     */
+    void setCardinalitySystem(CardinalitySystem cardinalities)
     {
-        for (int clause = 0; clause < formula.length; clause++)
+        this.cardinalities = cardinalities;
+        if (cardinalities == null)
+        {
+            return;
+        }
+        true_counts = new int[cardinalities.size()];
+        for (int i = 0; i < trail_size; i++)
         {
-            if (clauseDeadEnd(clause))
+            IntList constraints = cardinalities.getConstraints(trail[i]);
+            for (int j = 0; j < constraints.size(); j++)
             {
-                return true;
+                true_counts[constraints.get(j)]++;
             }
         }
-        return false;
+        cardinality_head = 0;
+        if (cardinalities.isContradictory())
+        {
+            conflict_clause = original_clauses
+                    + learned_clauses.store(new int[0], 0);
+            return;
+        }
+        rebuildWatches();
     }
 
     /**
-     * Adds an int array that represents a clause in the formula to be
-     * considered when testing the satisfiability.
+     * Chooses the kind of memory the clauses are kept in. Clauses that were
+     * already added are moved.
      *
-     * @param index the index of the clause in the formula array.
-     * @param clause the clause to be added.
+     * @param storage the kind of memory for the clauses.
      */
-    void addClause(int index, int[] clause)
+    void setClauseStorage(ClauseStorage storage)
     {
-        formula[index] = clause;
+        arena.setStorage(storage);
     }
 
     /**
-     * Changes the truth value of particular variable to be unset. When a
-     * variable is unset, the clauses satisfied by that variable are reset to 0
-     * in the satisfaction array, which means that the clause is no longer
-     * satisfied.
-     * Note: The var_index corresponding to the truth_values array is 1 less
-     * than the actual number of the variable.
+     * Sets the number of bytes the learned clauses may use before they are
+     * reduced regardless of the reduction schedule. This should be called
+     * before the search starts.
      *
-     * @param var_index the truth value to be unset, where the index is the
-     * variable number - 1.
+     * @param memory_limit the memory ceiling in bytes.
      */
-    void unsetTruthValue(int var_index)
+    void setLearnedMemoryLimit(long memory_limit)
+    {
+        learned_clauses = new ClauseDatabase(arena, memory_limit);
+    }
+
+    /**
+     * Writes every clause learned or deleted from now on to a DRAT proof.
+     * This should be called after setLearnedMemoryLimit(). Only clauses
+     * learned from dead ends are written, so the formula must not be
+     * preprocessed, substituted or given XOR or at-most-k constraints, whose
+     * clauses a proof checker could not follow.
+     *
+     * @param proof the proof, or null to stop writing it.
+     */
+    void setProof(ProofWriter proof)
+    {
+        this.proof = proof;
+        learned_clauses.setProof(proof);
+    }
+
+    /**
+     * Chooses the truth value that branch variables are given first. With
+     * phase saving, a variable that has been assigned before gets its last
+     * truth value again, which keeps the search close to the assignment it
+     * had before a backjump or restart.
+     *
+     * @param saving true to reuse each variable's last truth value.
+     * @param initial the truth value of variables that have no saved phase
+     * yet, and of every branch variable if saving is false.
+     */
+    void setPhase(boolean saving, boolean initial)
+    {
+        this.phase_saving = saving;
+        this.initial_phase = initial ? TRUE : FALSE;
+        Arrays.fill(this.saved_phases, initial_phase);
+    }
+
+    /**
+     * Replaces the saved phase of every variable, so that branch variables
+     * are first tried with the given values, such as an assignment that
+     * nearly satisfies the formula.
+     *
+     * @param phases the truth value of every variable, where the value of
+     * variable v is at index v - 1.
+     */
+    void setSavedPhases(boolean[] phases)
     {
-        for (int clause = 0; clause < formula.length; clause++)
+        for (int i = 0; i < saved_phases.length; i++)
         {
-            if (satisfied_clauses[clause] == var_index + 1)
-            {
-                satisfied_clauses[clause] = 0;
-            }
+            saved_phases[i] = phases[i] ? TRUE : FALSE;
         }
-        truth_values[var_index] = UNSET;
-        current_variable--;
     }
 
     /**
-     * Sets the truth value of a variable to true or false according to the
-     * boolean value.
+     * Chooses the way the next branch variable is picked. The MOMS and
+     * Jeroslow-Wang scores are computed from the clauses once, so this should
+     * be called after every clause has been added.
      *
-     * @param variable the variable to set
-     * @param value the boolean value to set
+     * @param heuristic the branching heuristic to use.
      */
-    void setTruthValue(int variable, boolean value)
+    void setHeuristic(Heuristic heuristic)
     {
-        if (value)
+        this.heuristic = heuristic;
+        if (heuristic == Heuristic.ORDERED || heuristic == Heuristic.LOOKAHEAD)
         {
-            truth_values[variable] = TRUE;
+            order = null;
+            return;
         }
-        else
+        order = new VariableHeap(truth_values.length);
+        if (heuristic == Heuristic.MOMS)
+        {
+            order.setScores(computeMomsScores());
+        }
+        else if (heuristic == Heuristic.JEROSLOW_WANG)
         {
-            truth_values[variable] = FALSE;
+            order.setScores(computeJeroslowWangScores());
         }
-        /* Move to the next variable so this method can be called
-         * again and again.
-         */
-        current_variable++;
     }
 
     /**
-     * Get the next variable to be set to true or false in the backtracking
-     * algorithm.
+     * Adds a small random amount to the score of every variable, so that
+     * solvers that differ only in their seed break ties between equal scores
+     * differently. The amount is far below the activity gained from one
+     * conflict. This should be called after setHeuristic().
      *
-     * @return the next variable to be assigned a truth value.
+     * @param seed the seed of the random numbers.
      */
-    int getNextVariable()
+    void perturbScores(long seed)
     {
-        return current_variable;
+        if (order == null)
+        {
+            return;
+        }
+        Random random = new Random(seed);
+        for (int var_index = 0; var_index < truth_values.length; var_index++)
+        {
+            order.increase(var_index, random.nextDouble() * SCORE_NOISE);
+        }
     }
 
     /**
-     * Get the String representation of the determined solution to the Formula.
-     * Pre: formula must be satisfiable and solved for solution to be correct.
+     * Tests whether every clause in the formula is satisfied. The number of
+     * unsatisfied clauses is kept up to date by every assignment, so no
+     * clause has to be visited.
      *
-     * @return the solution to the formula in the format: [variable=TRUE/FALSE,
-     * variable=TRUE/FALSE, ... ]
+     * @return true if all clauses are satisfied.
      */
-    public String getSolution()
+    boolean isEmpty()
+    {
+        return propagate() && unsatisfied_clauses == 0;
+    }
+
+    /**
+     * Propagates the pending assignments and reports whether a clause became
+     * a dead end. If one clause is unsatisfiable with the current truth
+     * assignments, then the formula has a dead-end clause.
+     *
+     * @return true if the formula has a dead-end clause.
+     */
+    boolean hasDeadEndClause()
+    {
+        return !propagate();
+    }
+
+    /**
+     * Adds an int array that represents a clause in the formula to be
+     * considered when testing the satisfiability. The clause is added to the
+     * occurrence list of each of its variables, and the first two variables
+     * of the clause start out as its watched variables, or as each other's
+     * implications if the clause has two variables. A clause with only one
+     * variable forces that variable immediately, and an empty clause is a dead
+     * end.
+     *
+     * @param index the index of the clause in the formula array.
+     * @param clause the clause to be added.
+     */
+    void addClause(int index, int[] clause)
     {
-        String result = "[";
-        for (int i = 0; i < truth_values.length; i++)
+        clause_offsets[index] = arena.allocate(clause, 0, false);
+        for (int var_index = 0; var_index < clause.length; var_index++)
         {
-            result += (i + 1) + "=";
-            if (truth_values[i] == 1)
+            occurrences[Literals.code(clause[var_index])].add(index);
+            if (literalValue(clause[var_index]) == TRUE)
             {
-                result += "TRUE";
+                markSatisfied(index);
             }
-            else
+        }
+        if (clause.length >= 2)
+        {
+            attach(index);
+        }
+        else if (clause.length == 1)
+        {
+            if (literalValue(clause[0]) == FALSE)
             {
-                result += "FALSE";
+                conflict_clause = index;
             }
-            if (i < truth_values.length - 1)
+            else if (literalValue(clause[0]) == UNSET)
             {
-                result += ", ";
+                enqueue(clause[0], NO_REASON);
             }
         }
-        result += "]";
-        return result;
+        else
+        {
+            conflict_clause = index;
+        }
+    }
+
+    /**
+     * Makes room for more variables. The new variables are unassigned, have
+     * a score of 0 and are tried first with the initial phase. XOR and
+     * at-most-k constraints only know the variables they were found with, so
+     * they must not be set.
+     * Pre: decisionLevel() is 0.
+     *
+     * @param variables the new number of variables, at least the current
+     * number.
+     */
+    void addVariables(int variables)
+    {
+        int old_variables = truth_values.length;
+        if (variables <= old_variables)
+        {
+            return;
+        }
+        truth_values = Arrays.copyOf(truth_values, variables);
+        Arrays.fill(truth_values, old_variables, variables, UNSET);
+        watches = Arrays.copyOf(watches, 2 * variables);
+        implications = Arrays.copyOf(implications, 2 * variables);
+        occurrences = Arrays.copyOf(occurrences, 2 * variables);
+        for (int literal = 2 * old_variables; literal < 2 * variables;
+                literal++)
+        {
+            watches[literal] = new IntList();
+            implications[literal] = new IntList();
+            occurrences[literal] = new IntList();
+        }
+        trail = Arrays.copyOf(trail, variables);
+        trail_limits = Arrays.copyOf(trail_limits, variables + 1);
+        variable_levels = Arrays.copyOf(variable_levels, variables);
+        reasons = Arrays.copyOf(reasons, variables);
+        seen = Arrays.copyOf(seen, variables);
+        trail_positions = Arrays.copyOf(trail_positions, variables);
+        saved_phases = Arrays.copyOf(saved_phases, variables);
+        Arrays.fill(saved_phases, old_variables, variables, initial_phase);
+        level_stamps = Arrays.copyOf(level_stamps, variables + 1);
+        if (order != null)
+        {
+            order.grow(variables);
+        }
     }
 
     /**
-     * Get the variable for a particular clause at the specified index. A
-     * negative return value means that the variable is negated.
+     * Adds input clauses to a formula that may already have been searched.
+     * Learned clauses are numbered after the input clauses, so the watch
+     * lists, implication lists and occurrence lists are rebuilt for the new
+     * numbering. Everything learned so far is kept, since the new clauses
+     * only make the formula stronger.
+     * Pre: decisionLevel() is 0 and every variable of the clauses exists.
      *
-     * @param clause the clause the variable is being taken from
-     * @param var_index the index of the variable in the clause
-     * @return the variable in the specified clause at the specified index.
+     * @param clauses the clauses to be added, without repeated literals.
+     * @return false if a clause is false under the level 0 assignments.
      */
-    private int getVariable(int clause, int var_index)
+    boolean addInputClauses(List<int[]> clauses)
     {
-        return formula[clause][var_index];
+        int old_clauses = original_clauses;
+        original_clauses += clauses.size();
+        clause_offsets = Arrays.copyOf(clause_offsets, original_clauses);
+        satisfied_clauses = Arrays.copyOf(satisfied_clauses, original_clauses);
+        for (int i = 0; i < clauses.size(); i++)
+        {
+            clause_offsets[old_clauses + i]
+                    = arena.allocate(clauses.get(i), 0, false);
+        }
+        return rebuildWatches();
     }
 
     /**
-     * Get the truth value for the corresponding variable. The variable may or
-     * may not be negative, and the value will be one greater than its index in
-     * the truth_values array. This is because truth_value indices start at 0,
-     * and variable numbers start at 1.
+     * Changes the truth value of particular variable to be unset. Every
+     * variable that was assigned after it, including the variables forced by
+     * unit propagation, is unset as well.
+     * Note: The var_index corresponding to the truth_values array is 1 less
+     * than the actual number of the variable.
      *
-     * @param variable the variable whose truth value is to be returned.
-     * @return the truth value for the given variable.
+     * @param var_index the truth value to be unset, where the index is the
+     * variable number - 1.
      */
-    private int getTruthValue(int variable)
+    void unsetTruthValue(int var_index)
     {
-        return truth_values[abs(variable) - 1];
+        backtrack(variable_levels[var_index] - 1);
     }
 
     /**
-     * Tests a clause to see if it is satisfied. A satisfied clause will have
-     * at least one non-negated variable set to TRUE (1) or at least one negated
-     * variable set to FALSE (0). Variables can be UNSET (-1).
+     * Pops assignments off the trail until only the assignments made at or
+     * below the given decision level are left. Only the clauses containing the
+     * unset variables lose a satisfying variable.
      *
-     * @param clause the index of the clause in formula to be tested.
-     * @return true if the clause is satisfied, which means it has at least one
-     * true variable.
+     * @param level the decision level to return to.
      */
-    private boolean clauseSatisfied(int clause)
+    void backtrack(int level)
     {
-        if (clauseHasBeenSatisfied(clause))
+        if (level >= decision_level)
         {
-            return true;
+            return;
         }
-        for (int var_index = 0; var_index < formula[clause].length; var_index++)
+        int limit = trail_limits[level];
+        while (trail_size > limit)
         {
-            int variable = getVariable(clause, var_index);
-            if ((getTruthValue(variable) == TRUE && variable > 0)
-                    || (getTruthValue(variable) == FALSE && variable < 0))
+            int literal = trail[--trail_size];
+            int unset_index = abs(literal) - 1;
+            IntList satisfied = occurrences[Literals.code(literal)];
+            for (int i = 0; i < satisfied.size(); i++)
             {
-                satisfied_clauses[clause] = abs(variable);
-                return true;
+                if (--satisfied_clauses[satisfied.get(i)] == 0)
+                {
+                    unsatisfied_clauses++;
+                }
+            }
+            if (cardinalities != null)
+            {
+                IntList constraints = cardinalities.getConstraints(literal);
+                for (int i = 0; i < constraints.size(); i++)
+                {
+                    true_counts[constraints.get(i)]--;
+                }
+            }
+            if (phase_saving)
+            {
+                saved_phases[unset_index] = truth_values[unset_index];
+            }
+            truth_values[unset_index] = UNSET;
+            if (unset_index < current_variable)
+            {
+                current_variable = unset_index;
+            }
+            if (order != null)
+            {
+                order.insert(unset_index);
             }
         }
-        return false;
+        decision_level = level;
+        propagation_head = trail_size;
+        implication_head = trail_size;
+        cardinality_head = trail_size;
+        // The XORs were eliminated at the end of every level that is kept.
+        xor_head = Math.min(xor_head, trail_size);
+        conflict_clause = NO_CONFLICT;
     }
 
     /**
-     * Tests a clause to see if it is a dead end. A dead-end clause will have
-     * all of its variables evaluate to false. None of its positive variables
-     * can be TRUE (1), and none of its negated variables can be FALSE (0).
-     * A clause can only be dead-ended if none of its variables are UNSET (-1).
+     * Get the number of decisions currently on the trail. Assignments made
+     * before the first decision are at level 0.
      *
-     * @param clause the index of the clause in formula to be tested.
-     * @return true if all variables in a clause are FALSE (0).
+     * @return the current decision level.
      */
-    private boolean clauseDeadEnd(int clause)
+    int decisionLevel()
     {
-        if (clauseHasBeenSatisfied(clause))
-        {
-            return false;
-        }
-        for (int var_index = 0; var_index < formula[clause].length; var_index++)
-        {
-            int variable = getVariable(clause, var_index);
-            if ((getTruthValue(variable) == TRUE && variable > 0)
-                    || (getTruthValue(variable) == FALSE && variable < 0)
-                    || (getTruthValue(variable) == UNSET))
-            {
-                return false;
-            }
-        }
-        return true;
+        return decision_level;
+    }
+
+    /**
+     * Get the variable that was decided at the given decision level.
+     *
+     * @param level a decision level between 1 and decisionLevel().
+     * @return the index of the decision variable of that level.
+     */
+    int getDecisionVariable(int level)
+    {
+        return abs(trail[trail_limits[level - 1]]) - 1;
+    }
+
+    /**
+     * Get the truth value that the decision variable of the given level was
+     * set to.
+     *
+     * @param level a decision level between 1 and decisionLevel().
+     * @return the truth value of the decision variable of that level.
+     */
+    boolean getDecisionValue(int level)
+    {
+        return trail[trail_limits[level - 1]] > 0;
+    }
+
+    /**
+     * Get the number of clauses read from the input.
+     *
+     * @return the number of input clauses.
+     */
+    int getOriginalClauseCount()
+    {
+        return original_clauses;
+    }
+
+    /**
+     * Get a copy of a clause read from the input. The order of its variables
+     * may have changed since it was added.
+     *
+     * @param index the number of the clause.
+     * @return the clause.
+     */
+    int[] getOriginalClause(int index)
+    {
+        return arena.getClause(clause_offsets[index]);
     }
 
     /**
-     * Determine whether the given clause has been satisfied by a previous
-     * variable assignment or not.
+     * Get the number of variables in the formula.
      *
-     * @param clause the clause to be tested for satisfaction.
-     * @return true if the clause has been satisfied.
+     * @return the number of variables.
      */
-    private boolean clauseHasBeenSatisfied(int clause)
+    int getVariableCount()
     {
-        return (satisfied_clauses[clause] != 0);
+        return truth_values.length;
+    }
+
+    /**
+     * Sets the truth value of a variable to true or false according to the
+     * boolean value, then propagates the consequences of the assignment. The
+     * variable becomes the decision of a new decision level.
+     *
+     * @param variable the variable to set
+     * @param value the boolean value to set
+     */
+    void setTruthValue(int variable, boolean value)
+    {
+        trail_limits[decision_level++] = trail_size;
+        enqueue(value ? variable + 1 : -(variable + 1), NO_REASON);
+        propagate();
+    }
+
+    /**
+     * Derives a new clause from the current dead-end clause by resolving it
+     * with the clauses that forced its variables, newest assignment first,
+     * until only one variable of the current decision level is left (the
+     * first unique implication point). Variables whose reason clause is
+     * already covered by the rest of the new clause are dropped.
+     * Pre: hasDeadEndClause() is true and decisionLevel() is above 0.
+     *
+     * @return the learned clause. Its first variable is the negation of the
+     * unique implication point and its second variable, if any, is the one
+     * assigned at the highest remaining decision level.
+     */
+    int[] analyzeConflict()
+    {
+        IntList learned = new IntList();
+        // Placeholder for the unique implication point.
+        learned.add(0);
+        IntList visited = new IntList();
+        int pending = 0;
+        int literal = 0;
+        int index = trail_size - 1;
+        int clause_index = conflict_clause;
+
+        do
+        {
+            IntList clause = getReasonClause(clause_index, literal);
+            if (clause_index >= original_clauses)
+            {
+                learned_clauses.bump(clause_index - original_clauses,
+                        computeLBD(clause));
+            }
+            // Skip the variable the reason clause forced. It is the first
+            // variable of a longer clause, but binary clauses are never
+            // reordered.
+            for (int var_index = 0; var_index < clause.size(); var_index++)
+            {
+                int other = clause.get(var_index);
+                int other_index = abs(other) - 1;
+                if (other == literal)
+                {
+                    continue;
+                }
+                if (!seen[other_index] && variable_levels[other_index] > 0)
+                {
+                    seen[other_index] = true;
+                    visited.add(other_index);
+                    if (variable_levels[other_index] == decision_level)
+                    {
+                        pending++;
+                    }
+                    else
+                    {
+                        learned.add(other);
+                    }
+                }
+            }
+            // Find the newest assignment that takes part in the conflict.
+            while (!seen[abs(trail[index]) - 1])
+            {
+                index--;
+            }
+            literal = trail[index--];
+            clause_index = reasons[abs(literal) - 1];
+            seen[abs(literal) - 1] = false;
+            pending--;
+        }
+        while (pending > 0);
+        learned.set(0, -literal);
+
+        int kept = 1;
+        for (int i = 1; i < learned.size(); i++)
+        {
+            if (!isRedundant(learned.get(i)))
+            {
+                learned.set(kept++, learned.get(i));
+            }
+        }
+        learned.shrink(kept);
+        for (int i = 0; i < visited.size(); i++)
+        {
+            seen[visited.get(i)] = false;
+            bumpActivity(visited.get(i));
+        }
+        decayActivities();
+        learned_clauses.decayActivities();
+
+        int[] clause = new int[learned.size()];
+        for (int i = 0; i < clause.length; i++)
+        {
+            clause[i] = learned.get(i);
+            if (i > 1 && level(clause[i]) > level(clause[1]))
+            {
+                clause[i] = clause[1];
+                clause[1] = learned.get(i);
+            }
+        }
+        return clause;
+    }
+
+    /**
+     * Finds the decisions that made a literal false, by following the
+     * reasons of the assignments back from the literal's negation. When every
+     * decision is an assumption, they are the assumptions that cannot all
+     * hold with the literal.
+     * Pre: the literal is false.
+     *
+     * @param literal the literal that was found false.
+     * @return the literal followed by the decided literals that force its
+     * negation. Only the literal is returned if it is false at level 0.
+     */
+    int[] analyzeFinal(int literal)
+    {
+        IntList core = new IntList();
+        core.add(literal);
+        if (level(literal) > 0)
+        {
+            seen[abs(literal) - 1] = true;
+            for (int i = trail_size - 1; i >= trail_limits[0]; i--)
+            {
+                int var_index = abs(trail[i]) - 1;
+                if (!seen[var_index])
+                {
+                    continue;
+                }
+                seen[var_index] = false;
+                if (reasons[var_index] == NO_REASON)
+                {
+                    core.add(trail[i]);
+                    continue;
+                }
+                IntList clause = getReasonClause(reasons[var_index], trail[i]);
+                for (int j = 0; j < clause.size(); j++)
+                {
+                    int other_index = abs(clause.get(j)) - 1;
+                    if (clause.get(j) != trail[i]
+                            && variable_levels[other_index] > 0)
+                    {
+                        seen[other_index] = true;
+                    }
+                }
+            }
+        }
+        return core.toArray();
+    }
+
+    /**
+     * Raises the activity of every variable in the current dead-end clause.
+     * This lets the VSIDS heuristic learn from dead ends when no clauses are
+     * being learned.
+     * Pre: hasDeadEndClause() is true.
+     */
+    void bumpConflict()
+    {
+        IntList clause = getReasonClause(conflict_clause, 0);
+        for (int var_index = 0; var_index < clause.size(); var_index++)
+        {
+            bumpActivity(abs(clause.get(var_index)) - 1);
+        }
+        decayActivities();
+    }
+
+    /**
+     * Computes the literal block distance of a clause, which is the number of
+     * different decision levels among its variables. Clauses with a low
+     * distance link few decisions together and tend to stay useful.
+     * Pre: every variable of the clause is assigned.
+     *
+     * @param clause the clause to be measured.
+     * @return the number of decision levels in the clause.
+     */
+    int computeLBD(int[] clause)
+    {
+        lbd_stamp++;
+        int lbd = 0;
+        for (int var_index = 0; var_index < clause.length; var_index++)
+        {
+            lbd += stampLevel(level(clause[var_index]));
+        }
+        return lbd;
+    }
+
+    /**
+     * Computes the literal block distance of a reason clause.
+     *
+     * @param clause the clause to be measured.
+     * @return the number of decision levels in the clause.
+     */
+    private int computeLBD(IntList clause)
+    {
+        lbd_stamp++;
+        int lbd = 0;
+        for (int var_index = 0; var_index < clause.size(); var_index++)
+        {
+            lbd += stampLevel(level(clause.get(var_index)));
+        }
+        return lbd;
+    }
+
+    /**
+     * Marks a decision level as counted by the literal block distance being
+     * computed.
+     *
+     * @param clause_level the decision level of a variable of the clause.
+     * @return 1 if the level was not counted yet, 0 otherwise.
+     */
+    private int stampLevel(int clause_level)
+    {
+        if (level_stamps[clause_level] == lbd_stamp)
+        {
+            return 0;
+        }
+        level_stamps[clause_level] = lbd_stamp;
+        return 1;
+    }
+
+    /**
+     * Get the decision level that a learned clause should backjump to, which
+     * is the highest level among all but its first variable. After
+     * backtracking there, the clause forces its first variable.
+     *
+     * @param clause a clause returned by analyzeConflict().
+     * @return the decision level to backtrack to.
+     */
+    int getAssertingLevel(int[] clause)
+    {
+        return (clause.length > 1) ? level(clause[1]) : 0;
+    }
+
+    /**
+     * Adds a clause learned by analyzeConflict() to the formula and assigns
+     * its first variable, which is the only one left unassigned after
+     * backtracking to getAssertingLevel(). Clauses with one variable are not
+     * stored, since their variable stays assigned at level 0.
+     *
+     * @param clause the learned clause.
+     * @param lbd the literal block distance of the clause, measured before
+     * backtracking.
+     */
+    void addLearnedClause(int[] clause, int lbd)
+    {
+        if (proof != null)
+        {
+            proof.add(clause);
+        }
+        if (clause.length == 1)
+        {
+            enqueue(clause[0], NO_REASON);
+            return;
+        }
+        int index = original_clauses + learned_clauses.add(clause, lbd);
+        attach(index);
+        enqueue(clause[0], index);
+    }
+
+    /**
+     * Adds a clause that another solver learned from the same input. Every
+     * solver's clauses are implied by the input, so the clause may be added
+     * to any of them. Literals that are false at level 0 are left out, and a
+     * clause that is already satisfied is not added.
+     * Pre: decisionLevel() is 0.
+     *
+     * @param shared the clause, which is copied and not changed.
+     * @return false if every literal of the clause is false, which means the
+     * formula is unsatisfiable.
+     */
+    boolean addSharedClause(int[] shared)
+    {
+        IntList open = new IntList(shared.length);
+        for (int i = 0; i < shared.length; i++)
+        {
+            int value = literalValue(shared[i]);
+            if (value == TRUE)
+            {
+                return true;
+            }
+            if (value == UNSET)
+            {
+                open.add(shared[i]);
+            }
+        }
+        if (open.size() == 0)
+        {
+            return false;
+        }
+        if (open.size() == 1)
+        {
+            enqueue(open.get(0), NO_REASON);
+            return true;
+        }
+        int[] clause = open.toArray();
+        attach(original_clauses + learned_clauses.store(clause, clause.length));
+        return true;
+    }
+
+    /**
+     * Tests whether the learned clauses are due to be reduced.
+     *
+     * @return true if reduceLearnedClauses() should be called.
+     */
+    boolean shouldReduceLearnedClauses()
+    {
+        return learned_clauses.shouldReduce();
+    }
+
+    /**
+     * Deletes the least useful learned clauses. Clauses that are the reason
+     * for a current assignment are kept. The watch lists, implication lists
+     * and reasons are updated to the new numbering of the remaining clauses.
+     */
+    void reduceLearnedClauses()
+    {
+        boolean[] locked = new boolean[learned_clauses.size()];
+        for (int i = 0; i < trail_size; i++)
+        {
+            int reason = reasons[abs(trail[i]) - 1];
+            if (reason >= original_clauses)
+            {
+                locked[reason - original_clauses] = true;
+            }
+        }
+        int[] new_indices = learned_clauses.reduce(locked);
+        if (arena.shouldCompact())
+        {
+            compactArena();
+        }
+
+        for (int literal = 0; literal < watches.length; literal++)
+        {
+            IntList watch_list = watches[literal];
+            int kept = 0;
+            for (int i = 0; i < watch_list.size(); i++)
+            {
+                int clause_index = watch_list.get(i);
+                if (clause_index >= original_clauses)
+                {
+                    int new_index = new_indices[clause_index - original_clauses];
+                    if (new_index == -1)
+                    {
+                        continue;
+                    }
+                    clause_index = original_clauses + new_index;
+                }
+                watch_list.set(kept++, clause_index);
+            }
+            watch_list.shrink(kept);
+
+            // Binary clauses are never deleted, but they may move.
+            IntList implied = implications[literal];
+            for (int i = 1; i < implied.size(); i += 2)
+            {
+                int clause_index = implied.get(i);
+                if (clause_index >= original_clauses)
+                {
+                    implied.set(i, original_clauses
+                            + new_indices[clause_index - original_clauses]);
+                }
+            }
+        }
+        for (int i = 0; i < trail_size; i++)
+        {
+            int var_index = abs(trail[i]) - 1;
+            if (reasons[var_index] >= original_clauses)
+            {
+                reasons[var_index] = original_clauses
+                        + new_indices[reasons[var_index] - original_clauses];
+            }
+        }
+    }
+
+    /**
+     * Looks for equivalent literals in the binary clauses, including the
+     * learned ones, and replaces every variable that is equivalent to a lower
+     * variable by that variable in every clause. Literals that imply their
+     * own negation are fixed to false instead; equivalences are then left for
+     * the next call. Substituted variables are recorded so that the solution
+     * gives them the value of their representative.
+     * Pre: decisionLevel() is 0.
+     *
+     * @return false if the formula was found to be unsatisfiable.
+     */
+    boolean substituteEquivalences()
+    {
+        if (!propagate())
+        {
+            return false;
+        }
+        ImplicationGraph graph = new ImplicationGraph(truth_values.length);
+        for (int clause_index = 0;
+                clause_index < original_clauses + learned_clauses.size();
+                clause_index++)
+        {
+            int offset = getClauseOffset(clause_index);
+            if (arena.length(offset) == 2
+                    && codeValue(arena.get(offset, 0)) == UNSET
+                    && codeValue(arena.get(offset, 1)) == UNSET)
+            {
+                graph.addBinary(Literals.literal(arena.get(offset, 0)),
+                        Literals.literal(arena.get(offset, 1)));
+            }
+        }
+        if (graph.size() == 0)
+        {
+            return true;
+        }
+
+        IntList failed = graph.findFailedLiterals(
+                Preprocessor.FAILED_LITERAL_BUDGET);
+        if (failed.size() > 0)
+        {
+            for (int i = 0; i < failed.size(); i++)
+            {
+                if (literalValue(failed.get(i)) == FALSE)
+                {
+                    return false;
+                }
+                if (literalValue(failed.get(i)) == UNSET)
+                {
+                    enqueue(failed.get(i), NO_REASON);
+                }
+            }
+            return propagate();
+        }
+        if (!graph.findEquivalences())
+        {
+            return false;
+        }
+
+        int[] substitutes = new int[truth_values.length];
+        IntList records = new IntList();
+        for (int var = 1; var <= truth_values.length; var++)
+        {
+            int representative = graph.getRepresentative(var);
+            if (representative != var && truth_values[var - 1] == UNSET)
+            {
+                substitutes[var - 1] = representative;
+                records.add(var);
+                records.add(-representative);
+                records.add(var);
+                records.add(2);
+                records.add(-var);
+                records.add(representative);
+                records.add(-var);
+                records.add(2);
+            }
+        }
+        if (records.size() == 0)
+        {
+            return true;
+        }
+
+        for (int clause_index = 0; clause_index < original_clauses;
+                clause_index++)
+        {
+            int old_offset = clause_offsets[clause_index];
+            clause_offsets[clause_index] = arena.allocate(substitute(
+                    arena.getClause(old_offset), substitutes), 0, false);
+            arena.free(old_offset);
+        }
+        boolean[] deleted = new boolean[learned_clauses.size()];
+        for (int i = 0; i < learned_clauses.size(); i++)
+        {
+            int[] clause = substitute(
+                    arena.getClause(learned_clauses.get(i)), substitutes);
+            deleted[i] = clause.length == 2 && clause[0] == -clause[1];
+            learned_clauses.set(i, clause);
+        }
+        learned_clauses.compact(deleted);
+        compactArena();
+
+        int old_length = reconstruction.length;
+        reconstruction = Arrays.copyOf(reconstruction,
+                old_length + records.size());
+        for (int i = 0; i < records.size(); i++)
+        {
+            reconstruction[old_length + i] = records.get(i);
+        }
+        return rebuildWatches();
+    }
+
+    /**
+     * Replaces the substituted variables of a clause by their
+     * representatives and drops repeated literals. A clause that becomes a
+     * tautology is replaced by the tautology made of its first repeated
+     * variable, which keeps it in place without ever constraining anything.
+     *
+     * @param clause the clause.
+     * @param substitutes the representative literal of every substituted
+     * variable, or 0 for variables that are kept.
+     * @return the substituted clause.
+     */
+    private static int[] substitute(int[] clause, int[] substitutes)
+    {
+        IntList result = new IntList(clause.length);
+        for (int var_index = 0; var_index < clause.length; var_index++)
+        {
+            int literal = clause[var_index];
+            int representative = substitutes[abs(literal) - 1];
+            if (representative != 0)
+            {
+                literal = (literal > 0) ? representative : -representative;
+            }
+            boolean repeated = false;
+            for (int i = 0; i < result.size(); i++)
+            {
+                if (result.get(i) == -literal)
+                {
+                    return new int[]
+                    {
+                        literal, -literal
+                    };
+                }
+                repeated = repeated || result.get(i) == literal;
+            }
+            if (!repeated)
+            {
+                result.add(literal);
+            }
+        }
+        return result.toArray();
+    }
+
+    /**
+     * Rebuilds the watch lists, implication lists, occurrence lists and
+     * satisfaction counts after clauses have been rewritten at decision level
+     * 0. Each clause watches two variables that are not false. A clause with only one such
+     * variable forces it, and a clause with none is a dead end.
+     * Pre: decisionLevel() is 0.
+     *
+     * @return false if a clause is false under the level 0 assignments.
+     */
+    private boolean rebuildWatches()
+    {
+        for (int literal = 0; literal < watches.length; literal++)
+        {
+            watches[literal].clear();
+            implications[literal].clear();
+            occurrences[literal].clear();
+        }
+        unsatisfied_clauses = 0;
+        for (int clause_index = 0;
+                clause_index < original_clauses + learned_clauses.size();
+                clause_index++)
+        {
+            int offset = getClauseOffset(clause_index);
+            int length = arena.length(offset);
+            if (clause_index < original_clauses)
+            {
+                satisfied_clauses[clause_index] = 0;
+                for (int var_index = 0; var_index < length; var_index++)
+                {
+                    int code = arena.get(offset, var_index);
+                    occurrences[code].add(clause_index);
+                    if (codeValue(code) == TRUE)
+                    {
+                        satisfied_clauses[clause_index]++;
+                    }
+                }
+                if (satisfied_clauses[clause_index] == 0)
+                {
+                    unsatisfied_clauses++;
+                }
+            }
+
+            // Move the variables that are not false to the front.
+            int open = 0;
+            for (int var_index = 0; var_index < length; var_index++)
+            {
+                if (codeValue(arena.get(offset, var_index)) != FALSE)
+                {
+                    arena.swap(offset, var_index, open++);
+                }
+            }
+            if (open == 0)
+            {
+                conflict_clause = clause_index;
+                return false;
+            }
+            if (length >= 2)
+            {
+                attach(clause_index);
+            }
+            if (open == 1 && codeValue(arena.get(offset, 0)) == UNSET)
+            {
+                enqueue(Literals.literal(arena.get(offset, 0)), NO_REASON);
+            }
+        }
+        for (int i = 0; i < trail_size; i++)
+        {
+            reasons[abs(trail[i]) - 1] = NO_REASON;
+        }
+        return propagate();
+    }
+
+    /**
+     * Tests whether a literal of a learned clause can be left out because the
+     * clause that forced it only contains variables that are already in the
+     * learned clause or were assigned before the first decision.
+     *
+     * @param literal a literal of the learned clause other than the first.
+     * @return true if the literal is implied by the rest of the clause.
+     */
+    private boolean isRedundant(int literal)
+    {
+        int reason = reasons[abs(literal) - 1];
+        if (reason == NO_REASON)
+        {
+            return false;
+        }
+        // The forced variable is part of the learned clause, so it is seen.
+        IntList clause = getReasonClause(reason, -literal);
+        for (int var_index = 0; var_index < clause.size(); var_index++)
+        {
+            int other_index = abs(clause.get(var_index)) - 1;
+            if (!seen[other_index] && variable_levels[other_index] > 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Raises the activity of a variable for the VSIDS heuristic. If the
+     * activity grows too large, every activity is scaled down together.
+     *
+     * @param var_index the variable index.
+     */
+    private void bumpActivity(int var_index)
+    {
+        if (heuristic != Heuristic.VSIDS)
+        {
+            return;
+        }
+        order.increase(var_index, activity_increment);
+        if (order.getScore(var_index) > ACTIVITY_LIMIT)
+        {
+            order.scale(1 / ACTIVITY_LIMIT);
+            activity_increment /= ACTIVITY_LIMIT;
+        }
+    }
+
+    /**
+     * Makes every existing activity count for less than the activity gained
+     * by the next conflict.
+     */
+    private void decayActivities()
+    {
+        activity_increment /= ACTIVITY_DECAY;
+    }
+
+    /**
+     * Computes the MOMS score of every variable. Only the clauses of the
+     * shortest length above one count. If a variable occurs f times and its
+     * negation occurs g times in those clauses of length k, its score is
+     * (f + g) * 2^k + f * g, which favors variables that occur often with
+     * both signs.
+     *
+     * @return the MOMS score of every variable.
+     */
+    private double[] computeMomsScores()
+    {
+        int shortest = Integer.MAX_VALUE;
+        for (int clause = 0; clause < original_clauses; clause++)
+        {
+            int length = arena.length(clause_offsets[clause]);
+            if (length >= 2)
+            {
+                shortest = Math.min(shortest, length);
+            }
+        }
+        double[] positive = new double[truth_values.length];
+        double[] negative = new double[truth_values.length];
+        for (int clause = 0; clause < original_clauses; clause++)
+        {
+            int offset = clause_offsets[clause];
+            if (arena.length(offset) != shortest)
+            {
+                continue;
+            }
+            for (int var_index = 0; var_index < shortest; var_index++)
+            {
+                int code = arena.get(offset, var_index);
+                if ((code & 1) == 0)
+                {
+                    positive[code >> 1]++;
+                }
+                else
+                {
+                    negative[code >> 1]++;
+                }
+            }
+        }
+        double[] scores = new double[truth_values.length];
+        double weight = (shortest == Integer.MAX_VALUE) ? 1 : Math.pow(2, shortest);
+        for (int var = 0; var < scores.length; var++)
+        {
+            scores[var] = (positive[var] + negative[var]) * weight
+                    + positive[var] * negative[var];
+        }
+        return scores;
+    }
+
+    /**
+     * Computes the two-sided Jeroslow-Wang score of every variable. Every
+     * clause of length k adds 2^-k to the score of each of its variables, so
+     * variables in short clauses score highest.
+     *
+     * @return the Jeroslow-Wang score of every variable.
+     */
+    private double[] computeJeroslowWangScores()
+    {
+        double[] scores = new double[truth_values.length];
+        for (int clause = 0; clause < original_clauses; clause++)
+        {
+            int offset = clause_offsets[clause];
+            double weight = Math.pow(2, -arena.length(offset));
+            for (int var_index = 0; var_index < arena.length(offset); var_index++)
+            {
+                scores[arena.get(offset, var_index) >> 1] += weight;
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Get the offset in the arena of an input clause or a learned clause.
+     *
+     * @param clause_index the number of the clause. Learned clauses are
+     * numbered after the input clauses.
+     * @return the offset of the clause.
+     */
+    private int getClauseOffset(int clause_index)
+    {
+        if (clause_index < original_clauses)
+        {
+            return clause_offsets[clause_index];
+        }
+        return learned_clauses.get(clause_index - original_clauses);
+    }
+
+    /**
+     * Moves the clauses to the front of the arena and updates their offsets.
+     */
+    private void compactArena()
+    {
+        arena.compact();
+        for (int i = 0; i < original_clauses; i++)
+        {
+            clause_offsets[i] = arena.relocate(clause_offsets[i]);
+        }
+        learned_clauses.relocate();
+    }
+
+    /**
+     * Get the clause that forced a literal or that is a dead end. Clauses are
+     * looked up by their number. For an at-most-k constraint, the clause is
+     * built from the constraint's literals that were true before the forced
+     * literal was assigned: they and the forced literal's negation cannot all
+     * be true together.
+     *
+     * @param reason the number of a clause, or a constraint encoded by
+     * cardinalityReason().
+     * @param literal the literal that was forced, or 0 for a dead end.
+     * @return the clause, which contains the forced literal if there is one.
+     * The list is reused by the next call.
+     */
+    private IntList getReasonClause(int reason, int literal)
+    {
+        IntList clause = reason_buffer;
+        clause.clear();
+        if (reason >= 0)
+        {
+            int offset = getClauseOffset(reason);
+            for (int i = 0; i < arena.length(offset); i++)
+            {
+                clause.add(Literals.literal(arena.get(offset, i)));
+            }
+            return clause;
+        }
+        int[] literals = cardinalities.getLiterals(-2 - reason);
+        int position = (literal == 0) ? trail_size
+                : trail_positions[abs(literal) - 1];
+        if (literal != 0)
+        {
+            clause.add(literal);
+        }
+        for (int i = 0; i < literals.length; i++)
+        {
+            int var_index = abs(literals[i]) - 1;
+            if (literalValue(literals[i]) == TRUE
+                    && trail_positions[var_index] < position)
+            {
+                clause.add(-literals[i]);
+            }
+        }
+        return clause;
+    }
+
+    /**
+     * Get the reason that stands for an at-most-k constraint. Reasons from
+     * -2 down are constraints, so that they cannot be mistaken for clause
+     * numbers or NO_REASON.
+     *
+     * @param constraint the index of the constraint.
+     * @return the encoded reason.
+     */
+    private static int cardinalityReason(int constraint)
+    {
+        return -2 - constraint;
+    }
+
+    /**
+     * Get the decision level at which a literal's variable was assigned.
+     *
+     * @param literal the literal, negative if the variable is negated.
+     * @return the decision level of the literal's variable.
+     */
+    private int level(int literal)
+    {
+        return variable_levels[abs(literal) - 1];
+    }
+
+    /**
+     * Get the next variable to be set to true or false in the backtracking
+     * algorithm. Variables forced by unit propagation are skipped. The ORDERED
+     * heuristic takes the lowest unassigned variable, LOOKAHEAD takes the
+     * variable picked by probe(), and every other heuristic takes the
+     * unassigned variable with the highest score.
+     *
+     * @return the next variable to be assigned a truth value.
+     */
+    int getNextVariable()
+    {
+        if (heuristic == Heuristic.LOOKAHEAD && lookahead_variable != -1
+                && truth_values[lookahead_variable] == UNSET)
+        {
+            return lookahead_variable;
+        }
+        if (heuristic == Heuristic.ORDERED || heuristic == Heuristic.LOOKAHEAD)
+        {
+            while (truth_values[current_variable] != UNSET)
+            {
+                current_variable++;
+            }
+            return current_variable;
+        }
+        int var = order.removeMax();
+        while (truth_values[var] != UNSET)
+        {
+            var = order.removeMax();
+        }
+        return var;
+    }
+
+    /**
+     * Looks ahead before the next decision. Both values of each candidate
+     * variable are assigned on a decision level of their own and propagated,
+     * and the variable is scored by how much each value shrinks the formula:
+     * the number of variables it assigns plus the number of clauses it
+     * satisfies. The product of the two reductions favors variables that
+     * simplify the formula whichever way they go. The winner is returned by
+     * the next getNextVariable() and tried first with the value that
+     * simplifies less, which leaves the most room for a solution.
+     *
+     * If a value leads to a dead end, the dead end is analyzed like any other
+     * and the learned clause rules the value out, possibly after a backjump.
+     * Probing then stops so that the caller can check the formula again.
+     *
+     * @return true if probing changed the assignment, either by ruling out a
+     * failed value or by satisfying every clause; false if a variable was
+     * picked.
+     */
+    boolean probe()
+    {
+        boolean saving = phase_saving;
+        phase_saving = false;
+        try
+        {
+            lookahead_variable = -1;
+            double best_score = -1;
+            for (int var_index : getLookaheadCandidates())
+            {
+                int positive = probeLiteral(var_index + 1);
+                if (positive < 0)
+                {
+                    return true;
+                }
+                int negative = probeLiteral(-(var_index + 1));
+                if (negative < 0)
+                {
+                    return true;
+                }
+                double score = LOOKAHEAD_PRODUCT_WEIGHT * positive * negative
+                        + positive + negative;
+                if (score > best_score)
+                {
+                    best_score = score;
+                    lookahead_variable = var_index;
+                    saved_phases[var_index] = (positive <= negative)
+                            ? TRUE : FALSE;
+                }
+            }
+            return false;
+        }
+        finally
+        {
+            phase_saving = saving;
+        }
+    }
+
+    /**
+     * Tentatively assigns a literal on a new decision level and measures how
+     * much it reduces the formula. A literal that leads to a dead end is
+     * ruled out by a learned clause. A literal that satisfies every clause is
+     * kept as a decision.
+     *
+     * @param literal the literal to be tried.
+     * @return the number of variables assigned plus the number of clauses
+     * satisfied, or -1 if the assignment was changed for good.
+     */
+    private int probeLiteral(int literal)
+    {
+        int trail_before = trail_size;
+        int unsatisfied_before = unsatisfied_clauses;
+        trail_limits[decision_level++] = trail_size;
+        enqueue(literal, NO_REASON);
+        if (!propagate())
+        {
+            int[] learned = analyzeConflict();
+            int lbd = computeLBD(learned);
+            backtrack(getAssertingLevel(learned));
+            addLearnedClause(learned, lbd);
+            return -1;
+        }
+        if (unsatisfied_clauses == 0)
+        {
+            return -1;
+        }
+        int reduction = (trail_size - trail_before)
+                + (unsatisfied_before - unsatisfied_clauses);
+        backtrack(decision_level - 1);
+        return reduction;
+    }
+
+    /**
+     * Get the unassigned variables that probe() tries. If there are too many
+     * to try them all, the ones that occur in the most clauses are taken.
+     *
+     * @return the candidate variables.
+     */
+    private Integer[] getLookaheadCandidates()
+    {
+        IntList free = new IntList();
+        for (int var_index = 0; var_index < truth_values.length; var_index++)
+        {
+            if (truth_values[var_index] == UNSET)
+            {
+                free.add(var_index);
+            }
+        }
+        Integer[] candidates = new Integer[free.size()];
+        for (int i = 0; i < candidates.length; i++)
+        {
+            candidates[i] = free.get(i);
+        }
+        if (candidates.length > MAX_LOOKAHEAD_CANDIDATES)
+        {
+            Arrays.sort(candidates, new Comparator<Integer>()
+            {
+                @Override
+                public int compare(Integer first, Integer second)
+                {
+                    return occurrenceCount(second) - occurrenceCount(first);
+                }
+            });
+            candidates = Arrays.copyOf(candidates, MAX_LOOKAHEAD_CANDIDATES);
+        }
+        return candidates;
+    }
+
+    /**
+     * Get the number of input clauses a variable occurs in with either sign.
+     *
+     * @param var_index the variable index.
+     * @return the number of occurrences.
+     */
+    private int occurrenceCount(int var_index)
+    {
+        return occurrences[Literals.code(var_index, false)].size()
+                + occurrences[Literals.code(var_index, true)].size();
+    }
+
+    /**
+     * Get the truth value that the given branch variable should be tried with
+     * first.
+     *
+     * @param var_index the branch variable.
+     * @return true if the variable should be set to true first.
+     */
+    boolean getNextValue(int var_index)
+    {
+        return saved_phases[var_index] == TRUE;
+    }
+
+    /**
+     * Get the String representation of the determined solution to the Formula.
+     * Pre: formula must be satisfiable and solved for solution to be correct.
+     *
+     * @return the solution to the formula in the format: [variable=TRUE/FALSE,
+     * variable=TRUE/FALSE, ... ]
+     */
+    public String getSolution()
+    {
+        return formatSolution(getModel());
+    }
+
+    /**
+     * Get the String representation of a solution, in the format of
+     * getSolution().
+     *
+     * @param model the truth value of every variable, where the value of
+     * variable v is at index v - 1.
+     * @return the solution in the format: [variable=TRUE/FALSE,
+     * variable=TRUE/FALSE, ... ]
+     */
+    static String formatSolution(boolean[] model)
+    {
+        StringBuilder result = new StringBuilder(12 * model.length + 2);
+        result.append('[');
+        for (int i = 0; i < model.length; i++)
+        {
+            result.append(i + 1).append('=');
+            if (model[i])
+            {
+                result.append("TRUE");
+            }
+            else
+            {
+                result.append("FALSE");
+            }
+            if (i < model.length - 1)
+            {
+                result.append(", ");
+            }
+        }
+        result.append(']');
+        return result.toString();
+    }
+
+    /**
+     * Get the truth value of every variable in the determined solution.
+     * Unassigned variables are false, and the clauses removed by
+     * preprocessing are replayed in reverse so that every one of them is
+     * satisfied by flipping the variable it was recorded with.
+     * Pre: formula must be satisfiable and solved for the model to be correct.
+     *
+     * @return the truth value of every variable.
+     */
+    boolean[] getModel()
+    {
+        boolean[] model = new boolean[truth_values.length];
+        for (int i = 0; i < model.length; i++)
+        {
+            model[i] = truth_values[i] == TRUE;
+        }
+        int end = reconstruction.length;
+        while (end > 0)
+        {
+            int length = reconstruction[end - 1];
+            int witness = reconstruction[end - 2];
+            int start = end - 2 - length;
+            boolean satisfied = false;
+            for (int i = start; i < start + length && !satisfied; i++)
+            {
+                int literal = reconstruction[i];
+                satisfied = model[abs(literal) - 1] == (literal > 0);
+            }
+            if (!satisfied)
+            {
+                model[abs(witness) - 1] = witness > 0;
+            }
+            end = start;
+        }
+        return model;
+    }
+
+    /**
+     * Propagates every assignment on the trail until nothing more is forced
+     * or a dead-end clause is found. The implications of binary clauses are
+     * followed for every pending assignment before longer clauses are
+     * visited, since they are cheaper and find most dead ends first, and the
+     * at-most-k constraints come right after them. The XOR
+     * constraints are eliminated only once the clauses force nothing more.
+     *
+     * @return true if no dead-end clause was found.
+     */
+    private boolean propagate()
+    {
+        while (conflict_clause == NO_CONFLICT)
+        {
+            if (implication_head < trail_size)
+            {
+                propagateImplications(-trail[implication_head++]);
+            }
+            else if (cardinalities != null && cardinality_head < trail_size)
+            {
+                propagateCardinalities(trail[cardinality_head++]);
+            }
+            else if (propagation_head < trail_size)
+            {
+                propagateWatches(Literals.code(-trail[propagation_head++]));
+            }
+            else if (xors != null && xor_head != trail_size)
+            {
+                xor_head = trail_size;
+                propagateXors();
+            }
+            else
+            {
+                break;
+            }
+        }
+        return conflict_clause == NO_CONFLICT;
+    }
+
+    /**
+     * Forces the other variable of every binary clause containing a newly
+     * falsified variable. Only the implication list is read.
+     *
+     * @param false_literal the literal that has just become false.
+     */
+    private void propagateImplications(int false_literal)
+    {
+        IntList implied = implications[Literals.code(false_literal)];
+        for (int i = 0; i < implied.size(); i += 2)
+        {
+            int literal = implied.get(i);
+            int value = literalValue(literal);
+            if (value == UNSET)
+            {
+                enqueue(literal, implied.get(i + 1));
+            }
+            else if (value == FALSE)
+            {
+                conflict_clause = implied.get(i + 1);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks the at-most-k constraints that contain a newly true literal. A
+     * constraint with too many true literals is a dead end, and a constraint
+     * that has just become full makes its other literals false.
+     *
+     * @param true_literal the literal that has just become true.
+     */
+    private void propagateCardinalities(int true_literal)
+    {
+        IntList constraints = cardinalities.getConstraints(true_literal);
+        for (int i = 0; i < constraints.size(); i++)
+        {
+            int constraint = constraints.get(i);
+            int bound = cardinalities.getBound(constraint);
+            if (true_counts[constraint] > bound)
+            {
+                conflict_clause = cardinalityReason(constraint);
+                return;
+            }
+            if (true_counts[constraint] < bound)
+            {
+                continue;
+            }
+            int[] literals = cardinalities.getLiterals(constraint);
+            for (int j = 0; j < literals.length; j++)
+            {
+                if (literalValue(literals[j]) == UNSET)
+                {
+                    enqueue(-literals[j], cardinalityReason(constraint));
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the clauses that explain the consequences of the XOR constraints
+     * under the current assignment as learned clauses, and assigns the
+     * variables they force or records the one that is a dead end. Each
+     * clause keeps its most recently assigned false variables in the watched
+     * positions.
+     */
+    private void propagateXors()
+    {
+        List<int[]> explanations = xors.deduce(truth_values);
+        for (int[] clause : explanations)
+        {
+            boolean conflict = clause.length == 0
+                    || literalValue(clause[0]) == FALSE;
+            for (int watch = conflict ? 0 : 1;
+                    watch < Math.min(2, clause.length); watch++)
+            {
+                for (int i = watch + 1; i < clause.length; i++)
+                {
+                    if (level(clause[i]) > level(clause[watch]))
+                    {
+                        int literal = clause[i];
+                        clause[i] = clause[watch];
+                        clause[watch] = literal;
+                    }
+                }
+            }
+            if (clause.length == 1 && !conflict)
+            {
+                // Only a single XOR row forces a lone variable, and that is
+                // found before the first decision.
+                enqueue(clause[0], NO_REASON);
+                continue;
+            }
+            int index = original_clauses
+                    + learned_clauses.store(clause, clause.length);
+            if (clause.length >= 2)
+            {
+                attach(index);
+            }
+            if (conflict)
+            {
+                conflict_clause = index;
+                return;
+            }
+            enqueue(clause[0], index);
+        }
+    }
+
+    /**
+     * Visits the clauses watching a newly falsified variable. A clause that
+     * cannot find a new variable to watch either forces its other watched
+     * variable or, if that one is false too, is a dead end.
+     *
+     * @param false_code the code of the literal that has just become false.
+     */
+    private void propagateWatches(int false_code)
+    {
+        IntList watch_list = watches[false_code];
+        int kept = 0;
+        int watch_count = watch_list.size();
+        for (int i = 0; i < watch_count; i++)
+        {
+            int clause_index = watch_list.get(i);
+            int offset = getClauseOffset(clause_index);
+
+            // Keep the falsified watch in the second position.
+            if (arena.get(offset, 0) == false_code)
+            {
+                arena.swap(offset, 0, 1);
+            }
+
+            // The clause is already satisfied by its other watch.
+            int first = arena.get(offset, 0);
+            if (codeValue(first) == TRUE)
+            {
+                watch_list.set(kept++, clause_index);
+                continue;
+            }
+
+            if (findNewWatch(offset, clause_index))
+            {
+                continue;
+            }
+
+            watch_list.set(kept++, clause_index);
+            if (codeValue(first) == FALSE)
+            {
+                conflict_clause = clause_index;
+                // Keep the watches that were not visited yet.
+                for (i++; i < watch_count; i++)
+                {
+                    watch_list.set(kept++, watch_list.get(i));
+                }
+            }
+            else
+            {
+                enqueue(Literals.literal(first), clause_index);
+            }
+        }
+        watch_list.shrink(kept);
+    }
+
+    /**
+     * Starts watching a clause with two or more variables. A binary clause
+     * goes into the implication lists of its two variables and any longer
+     * clause into the watch lists of its first two variables. Input binary
+     * clauses that an at-most-one constraint stands for are left out.
+     *
+     * @param clause_index the number of the clause.
+     */
+    private void attach(int clause_index)
+    {
+        int offset = getClauseOffset(clause_index);
+        int first = arena.get(offset, 0);
+        int second = arena.get(offset, 1);
+        if (arena.length(offset) == 2 && clause_index < original_clauses
+                && cardinalities != null
+                && cardinalities.covers(Literals.literal(first),
+                        Literals.literal(second)))
+        {
+            return;
+        }
+        if (arena.length(offset) == 2)
+        {
+            implications[first].add(Literals.literal(second));
+            implications[first].add(clause_index);
+            implications[second].add(Literals.literal(first));
+            implications[second].add(clause_index);
+        }
+        else
+        {
+            watches[first].add(clause_index);
+            watches[second].add(clause_index);
+        }
+    }
+
+    /**
+     * Looks for a variable that is not false to replace the falsified watch in
+     * the second position of the clause. If one is found, the clause moves to
+     * the watch list of that variable.
+     *
+     * @param offset the offset of the clause whose second watch has become
+     * false.
+     * @param clause_index the number of the clause.
+     * @return true if a new watch was found.
+     */
+    private boolean findNewWatch(int offset, int clause_index)
+    {
+        int length = arena.length(offset);
+        for (int var_index = 2; var_index < length; var_index++)
+        {
+            if (codeValue(arena.get(offset, var_index)) != FALSE)
+            {
+                arena.swap(offset, 1, var_index);
+                watches[arena.get(offset, 1)].add(clause_index);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Assigns the given literal to be true and adds it to the trail so that
+     * its consequences will be propagated. Every clause containing the
+     * literal gains a satisfying variable.
+     *
+     * @param literal the variable to be made true, negative if the variable
+     * is to be set to FALSE.
+     * @param reason the clause that forced the assignment, or NO_REASON.
+     */
+    private void enqueue(int literal, int reason)
+    {
+        truth_values[abs(literal) - 1] = (literal > 0) ? TRUE : FALSE;
+        variable_levels[abs(literal) - 1] = decision_level;
+        reasons[abs(literal) - 1] = reason;
+        trail_positions[abs(literal) - 1] = trail_size;
+        trail[trail_size++] = literal;
+        if (cardinalities != null)
+        {
+            IntList constraints = cardinalities.getConstraints(literal);
+            for (int i = 0; i < constraints.size(); i++)
+            {
+                true_counts[constraints.get(i)]++;
+            }
+        }
+        IntList satisfied = occurrences[Literals.code(literal)];
+        for (int i = 0; i < satisfied.size(); i++)
+        {
+            markSatisfied(satisfied.get(i));
+        }
+    }
+
+    /**
+     * Counts one more true variable in the given clause. The clause stops
+     * being unsatisfied when it gets its first true variable.
+     *
+     * @param clause the index of the clause in the formula.
+     */
+    private void markSatisfied(int clause)
+    {
+        if (satisfied_clauses[clause]++ == 0)
+        {
+            unsatisfied_clauses--;
+        }
+    }
+
+    /**
+     * Get the truth value of a literal under the current truth assignments. A
+     * negated variable set to FALSE (0) is TRUE and a negated variable set to
+     * TRUE (1) is FALSE. UNSET (-1) variables give UNSET literals.
+     *
+     * @param literal the literal to be evaluated.
+     * @return TRUE, FALSE or UNSET.
+     */
+    int literalValue(int literal)
+    {
+        int value = truth_values[abs(literal) - 1];
+        if (value == UNSET || literal > 0)
+        {
+            return value;
+        }
+        return TRUE - value;
+    }
+
+    /**
+     * Get the truth value of a literal stored in the arena.
+     *
+     * @param code the code of the literal.
+     * @return TRUE, FALSE or UNSET.
+     */
+    private int codeValue(int code)
+    {
+        int value = truth_values[code >> 1];
+        if (value == UNSET)
+        {
+            return UNSET;
+        }
+        return value ^ (code & 1);
     }
 }
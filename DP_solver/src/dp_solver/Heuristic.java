@@ -0,0 +1,74 @@
+package dp_solver;
+
+/**
+ * Heuristic names the ways the Formula can choose its next branch variable.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+enum Heuristic
+{
+
+    /**
+     * Branch on the variables in the order they are numbered in the file.
+     */
+    ORDERED("ordered"),
+    /**
+     * Branch on the variable with the highest activity, where a variable's
+     * activity is raised every time it takes part in a conflict and all
+     * activities slowly decay.
+     */
+    VSIDS("vsids"),
+    /**
+     * Branch on the variable with the most occurrences in the shortest
+     * clauses of the input (Maximum Occurrences in clauses of Minimum Size).
+     */
+    MOMS("moms"),
+    /**
+     * Branch on the variable with the highest two-sided Jeroslow-Wang score,
+     * where every clause of length k adds 2^-k to each of its variables.
+     */
+    JEROSLOW_WANG("jw"),
+    /**
+     * Before every decision, tentatively assign both values to each of the
+     * most frequent free variables and propagate. A value that leads to a
+     * dead end is ruled out right away, and the variable whose two values
+     * both simplify the formula the most is branched on.
+     */
+    LOOKAHEAD("lookahead");
+
+    /**
+     * The name of the heuristic on the command line.
+     */
+    private final String name;
+
+    /**
+     * Initializes the heuristic with its command-line name.
+     *
+     * @param name the name of the heuristic on the command line.
+     */
+    Heuristic(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Finds the heuristic with the given command-line name.
+     *
+     * @param name the name of the heuristic on the command line.
+     * @return the heuristic with that name.
+     * @throws IllegalArgumentException if no heuristic has that name.
+     */
+    static Heuristic forName(String name)
+    {
+        for (Heuristic heuristic : values())
+        {
+            if (heuristic.name.equals(name))
+            {
+                return heuristic;
+            }
+        }
+        throw new IllegalArgumentException("Unknown heuristic: " + name);
+    }
+}
@@ -0,0 +1,274 @@
+package dp_solver;
+
+import static java.lang.Math.abs;
+import java.util.Arrays;
+
+/**
+ * ImplicationGraph is the graph of the binary clauses of a formula. Every
+ * binary clause (a or b) gives the two implications -a implies b and -b
+ * implies a. Literals in the same strongly connected component imply each
+ * other and are therefore equivalent, so they can all be replaced by one
+ * representative literal. A literal that implies its own negation cannot be
+ * true, so its negation can be fixed.
+ *
+ * Components are found with an iterative version of Tarjan's algorithm so
+ * that long implication chains do not overflow the call stack.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class ImplicationGraph
+{
+
+    /**
+     * The number of variables in the formula.
+     */
+    private final int variables;
+    /**
+     * Stores the binary clauses, two literals per clause.
+     */
+    private IntList binaries;
+    /**
+     * Stores where the edges of each literal start in the edges array. The
+     * edges of literal index i are edges[edge_starts[i]] up to
+     * edges[edge_starts[i + 1]].
+     */
+    private int[] edge_starts;
+    /**
+     * Stores the implied literal of every edge, grouped by source literal.
+     */
+    private int[] edges;
+    /**
+     * Stores the representative literal of each literal, indexed by
+     * Literals.code().
+     */
+    private int[] representatives;
+
+    /**
+     * Initializes an empty graph.
+     *
+     * @param variables the number of variables in the formula.
+     */
+    ImplicationGraph(int variables)
+    {
+        this.variables = variables;
+        this.binaries = new IntList();
+    }
+
+    /**
+     * Adds a binary clause to the graph.
+     *
+     * @param first a literal of the clause.
+     * @param second the other literal of the clause.
+     */
+    void addBinary(int first, int second)
+    {
+        binaries.add(first);
+        binaries.add(second);
+    }
+
+    /**
+     * Get the number of binary clauses in the graph.
+     *
+     * @return the number of binary clauses.
+     */
+    int size()
+    {
+        return binaries.size() / 2;
+    }
+
+    /**
+     * Finds the literals that imply their own negation by following the
+     * implications of every literal, as long as the total number of edges
+     * followed stays within the budget.
+     *
+     * @param budget the number of edges that may be followed in total.
+     * @return the negations of the failed literals, which must be true.
+     */
+    IntList findFailedLiterals(long budget)
+    {
+        buildEdges();
+        IntList fixed = new IntList();
+        int[] stamps = new int[2 * variables];
+        int[] queue = new int[2 * variables];
+        for (int node = 0; node < 2 * variables && budget > 0; node++)
+        {
+            int literal = Literals.literal(node);
+            int negation = Literals.code(-literal);
+            if (edge_starts[node] == edge_starts[node + 1])
+            {
+                continue;
+            }
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = node;
+            stamps[node] = node + 1;
+            boolean failed = false;
+            while (head < tail && !failed && budget > 0)
+            {
+                int current = queue[head++];
+                for (int e = edge_starts[current];
+                        e < edge_starts[current + 1]; e++)
+                {
+                    budget--;
+                    int next = Literals.code(edges[e]);
+                    if (next == negation)
+                    {
+                        failed = true;
+                        break;
+                    }
+                    if (stamps[next] != node + 1)
+                    {
+                        stamps[next] = node + 1;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            if (failed)
+            {
+                fixed.add(-literal);
+            }
+        }
+        return fixed;
+    }
+
+    /**
+     * Finds the strongly connected components of the graph and picks the
+     * literal with the lowest variable of each component as its
+     * representative. The component of a literal's negation is made of the
+     * negations of its literals, so the representative of -l is always the
+     * negation of the representative of l.
+     *
+     * @return false if some literal is equivalent to its own negation, which
+     * means the formula is unsatisfiable.
+     */
+    boolean findEquivalences()
+    {
+        buildEdges();
+        int nodes = 2 * variables;
+        int[] index = new int[nodes];
+        int[] low = new int[nodes];
+        boolean[] on_stack = new boolean[nodes];
+        int[] stack = new int[nodes];
+        int stack_size = 0;
+        int[] call_nodes = new int[nodes];
+        int[] call_edges = new int[nodes];
+        int next_index = 1;
+        representatives = new int[nodes];
+
+        for (int root = 0; root < nodes; root++)
+        {
+            if (index[root] != 0)
+            {
+                continue;
+            }
+            // Simulate the recursive depth-first search with an explicit
+            // stack of nodes and the next edge to follow from each.
+            int depth = 0;
+            call_nodes[0] = root;
+            call_edges[0] = edge_starts[root];
+            index[root] = low[root] = next_index++;
+            stack[stack_size++] = root;
+            on_stack[root] = true;
+            while (depth >= 0)
+            {
+                int node = call_nodes[depth];
+                if (call_edges[depth] < edge_starts[node + 1])
+                {
+                    int next = Literals.code(edges[call_edges[depth]++]);
+                    if (index[next] == 0)
+                    {
+                        index[next] = low[next] = next_index++;
+                        stack[stack_size++] = next;
+                        on_stack[next] = true;
+                        depth++;
+                        call_nodes[depth] = next;
+                        call_edges[depth] = edge_starts[next];
+                    }
+                    else if (on_stack[next])
+                    {
+                        low[node] = Math.min(low[node], index[next]);
+                    }
+                    continue;
+                }
+                if (low[node] == index[node])
+                {
+                    // node is the root of a component: pop it off the stack.
+                    int start = stack_size;
+                    int representative = Literals.literal(node);
+                    do
+                    {
+                        start--;
+                        int member = Literals.literal(stack[start]);
+                        if (abs(member) < abs(representative))
+                        {
+                            representative = member;
+                        }
+                    }
+                    while (stack[start] != node);
+                    for (int i = start; i < stack_size; i++)
+                    {
+                        on_stack[stack[i]] = false;
+                        representatives[stack[i]] = representative;
+                    }
+                    stack_size = start;
+                }
+                depth--;
+                if (depth >= 0)
+                {
+                    int parent = call_nodes[depth];
+                    low[parent] = Math.min(low[parent], low[node]);
+                }
+            }
+        }
+
+        for (int var = 1; var <= variables; var++)
+        {
+            if (representatives[Literals.code(var)]
+                    == representatives[Literals.code(-var)])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the representative of a literal's equivalence class.
+     * Pre: findEquivalences() has returned true.
+     *
+     * @param literal the literal.
+     * @return the representative literal, which is the literal itself if it
+     * is not equivalent to a literal of a lower variable.
+     */
+    int getRepresentative(int literal)
+    {
+        return representatives[Literals.code(literal)];
+    }
+
+    /**
+     * Builds the adjacency arrays of the graph from the binary clauses.
+     */
+    private void buildEdges()
+    {
+        int nodes = 2 * variables;
+        edge_starts = new int[nodes + 1];
+        for (int i = 0; i < binaries.size(); i++)
+        {
+            // The clause literal at i is implied by the negation of its
+            // partner.
+            edge_starts[Literals.code(-binaries.get(i ^ 1)) + 1]++;
+        }
+        for (int node = 0; node < nodes; node++)
+        {
+            edge_starts[node + 1] += edge_starts[node];
+        }
+        int[] next = Arrays.copyOf(edge_starts, nodes);
+        edges = new int[binaries.size()];
+        for (int i = 0; i < binaries.size(); i++)
+        {
+            edges[next[Literals.code(-binaries.get(i ^ 1))]++] = binaries.get(i);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package dp_solver;
+
+import static java.lang.Math.abs;
+import java.util.Random;
+
+/**
+ * InstanceFeatures measures a formula right after it is read, cheaply enough
+ * that the measurements can decide how to solve it: its size, the share of
+ * clauses of each length, and how well its variables split into communities.
+ *
+ * The communities are found in the variable incidence graph, in which two
+ * variables are joined if they share a clause. A clause of k variables joins
+ * each of its k(k-1)/2 pairs with weight 2/(k(k-1)), so that every clause
+ * adds the same weight to the graph. Labels are propagated for a few rounds,
+ * each variable taking the label with the most weight among its neighbors,
+ * and the modularity of the resulting communities is reported: near 0 for
+ * random formulas, and near 1 for formulas made of loosely connected parts,
+ * such as most encodings of structured problems.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class InstanceFeatures
+{
+
+    /**
+     * The names of the features, in the order toString() lists them.
+     */
+    static final String[] NAMES =
+    {
+        "variables", "clauses", "ratio", "unit", "binary", "ternary", "long",
+        "max_length", "mean_length", "modularity"
+    };
+    /**
+     * The value of every feature, in the order of NAMES.
+     */
+    private final double[] values;
+    /**
+     * The number of rounds of label propagation.
+     */
+    private static final int LABEL_ROUNDS = 10;
+    /**
+     * Clauses longer than this are left out of the incidence graph, since
+     * their many pairs would cost more than they tell.
+     */
+    private static final int MAX_GRAPH_CLAUSE = 64;
+    /**
+     * The seed of the order in which labels are propagated, fixed so that a
+     * formula always gets the same features.
+     */
+    private static final long LABEL_SEED = 1;
+
+    /**
+     * Measures a formula.
+     *
+     * @param formula the formula, as read from the input.
+     */
+    InstanceFeatures(Formula formula)
+    {
+        int variables = formula.getVariableCount();
+        int clause_count = formula.getOriginalClauseCount();
+        int[][] clauses = new int[clause_count][];
+        int[] lengths = new int[5];
+        long literals = 0;
+        int longest = 0;
+        for (int i = 0; i < clause_count; i++)
+        {
+            clauses[i] = formula.getOriginalClause(i);
+            int length = clauses[i].length;
+            lengths[Math.min(length, lengths.length - 1)]++;
+            literals += length;
+            longest = Math.max(longest, length);
+        }
+        double total = Math.max(clause_count, 1);
+        values = new double[]
+        {
+            variables,
+            clause_count,
+            clause_count / (double) Math.max(variables, 1),
+            lengths[1] / total,
+            lengths[2] / total,
+            lengths[3] / total,
+            lengths[4] / total,
+            longest,
+            literals / total,
+            modularity(variables, clauses)
+        };
+    }
+
+    /**
+     * Get the value of a feature.
+     *
+     * @param name the name of the feature, one of NAMES.
+     * @return the value of the feature.
+     * @throws IllegalArgumentException if there is no feature with the name.
+     */
+    double get(String name)
+    {
+        return values[indexOf(name)];
+    }
+
+    /**
+     * Get the position of a feature in NAMES.
+     *
+     * @param name the name of the feature.
+     * @return the position of the feature.
+     * @throws IllegalArgumentException if there is no feature with the name.
+     */
+    static int indexOf(String name)
+    {
+        for (int i = 0; i < NAMES.length; i++)
+        {
+            if (NAMES[i].equals(name))
+            {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown feature: " + name);
+    }
+
+    /**
+     * Get the features as name=value pairs separated by spaces.
+     *
+     * @return the features.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < NAMES.length; i++)
+        {
+            if (i > 0)
+            {
+                text.append(' ');
+            }
+            text.append(NAMES[i]).append('=');
+            if (values[i] == Math.rint(values[i]))
+            {
+                text.append((long) values[i]);
+            }
+            else
+            {
+                text.append(String.format("%.3f", values[i]));
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Estimates the modularity of the variable incidence graph by label
+     * propagation.
+     *
+     * @param variables the number of variables.
+     * @param clauses the clauses of the formula.
+     * @return the modularity of the communities found, or 0 if the graph has
+     * no edges or no split better than none was found.
+     */
+    private static double modularity(int variables, int[][] clauses)
+    {
+        IntList[] occurrences = new IntList[variables];
+        for (int v = 0; v < variables; v++)
+        {
+            occurrences[v] = new IntList(0);
+        }
+        double[] weights = new double[clauses.length];
+        double[] degrees = new double[variables];
+        double total_weight = 0;
+        for (int c = 0; c < clauses.length; c++)
+        {
+            int length = clauses[c].length;
+            if (length < 2 || length > MAX_GRAPH_CLAUSE)
+            {
+                continue;
+            }
+            weights[c] = 2.0 / (length * (length - 1));
+            total_weight += 1;
+            for (int literal : clauses[c])
+            {
+                occurrences[abs(literal) - 1].add(c);
+                degrees[abs(literal) - 1] += weights[c] * (length - 1);
+            }
+        }
+        if (total_weight == 0)
+        {
+            return 0;
+        }
+
+        int[] labels = new int[variables];
+        int[] order = new int[variables];
+        for (int v = 0; v < variables; v++)
+        {
+            labels[v] = v;
+            order[v] = v;
+        }
+        Random random = new Random(LABEL_SEED);
+        double[] scores = new double[variables];
+        IntList touched = new IntList();
+        boolean changed = true;
+        for (int round = 0; round < LABEL_ROUNDS && changed; round++)
+        {
+            changed = false;
+            for (int i = variables - 1; i > 0; i--)
+            {
+                int j = random.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+            for (int v : order)
+            {
+                IntList containing = occurrences[v];
+                for (int i = 0; i < containing.size(); i++)
+                {
+                    int c = containing.get(i);
+                    for (int literal : clauses[c])
+                    {
+                        int neighbor = abs(literal) - 1;
+                        if (neighbor != v)
+                        {
+                            if (scores[labels[neighbor]] == 0)
+                            {
+                                touched.add(labels[neighbor]);
+                            }
+                            scores[labels[neighbor]] += weights[c];
+                        }
+                    }
+                }
+                int best = labels[v];
+                for (int i = 0; i < touched.size(); i++)
+                {
+                    int label = touched.get(i);
+                    if (scores[label] > scores[best]
+                            || (scores[label] == scores[best] && label < best))
+                    {
+                        best = label;
+                    }
+                }
+                for (int i = 0; i < touched.size(); i++)
+                {
+                    scores[touched.get(i)] = 0;
+                }
+                touched.clear();
+                if (best != labels[v])
+                {
+                    labels[v] = best;
+                    changed = true;
+                }
+            }
+        }
+
+        // Q = sum over communities of inside / W - (degree / 2W)^2.
+        double inside = 0;
+        for (int c = 0; c < clauses.length; c++)
+        {
+            if (weights[c] == 0)
+            {
+                continue;
+            }
+            int[] clause = clauses[c];
+            for (int i = 0; i < clause.length; i++)
+            {
+                for (int j = i + 1; j < clause.length; j++)
+                {
+                    if (labels[abs(clause[i]) - 1] == labels[abs(clause[j]) - 1])
+                    {
+                        inside += weights[c];
+                    }
+                }
+            }
+        }
+        double[] community_degrees = new double[variables];
+        for (int v = 0; v < variables; v++)
+        {
+            community_degrees[labels[v]] += degrees[v];
+        }
+        double expected = 0;
+        for (int label = 0; label < variables; label++)
+        {
+            double share = community_degrees[label] / (2 * total_weight);
+            expected += share * share;
+        }
+        // Taking every variable as one community scores 0, so a worse
+        // partition is never reported.
+        return Math.max(0, inside / total_weight - expected);
+    }
+}
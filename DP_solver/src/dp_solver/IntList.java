@@ -0,0 +1,141 @@
+package dp_solver;
+
+import java.util.Arrays;
+
+/**
+ * IntList is a growable list of primitive ints. It is used for the watch
+ * lists and other per-literal lists of the Formula so that they do not have to
+ * box every clause index into an Integer.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class IntList
+{
+
+    /**
+     * Stores the elements of the list.
+     */
+    private int[] elements;
+    /**
+     * The number of elements currently in the list.
+     */
+    private int size;
+
+    /**
+     * Initializes an empty list with a small starting capacity.
+     */
+    IntList()
+    {
+        this(4);
+    }
+
+    /**
+     * Initializes an empty list with the given starting capacity.
+     *
+     * @param capacity the number of elements the list can hold before it has
+     * to grow.
+     */
+    IntList(int capacity)
+    {
+        this.elements = new int[Math.max(capacity, 1)];
+        this.size = 0;
+    }
+
+    /**
+     * Adds an element to the end of the list, growing the list if necessary.
+     *
+     * @param element the element to be added.
+     */
+    void add(int element)
+    {
+        if (size == elements.length)
+        {
+            elements = Arrays.copyOf(elements, size * 2);
+        }
+        elements[size++] = element;
+    }
+
+    /**
+     * Get the element at the given index.
+     *
+     * @param index the index of the element.
+     * @return the element at the given index.
+     */
+    int get(int index)
+    {
+        return elements[index];
+    }
+
+    /**
+     * Replaces the element at the given index.
+     *
+     * @param index the index of the element.
+     * @param element the new value of the element.
+     */
+    void set(int index, int element)
+    {
+        elements[index] = element;
+    }
+
+    /**
+     * Get the number of elements in the list.
+     *
+     * @return the number of elements in the list.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Get the elements of the list in an array of their own.
+     *
+     * @return the elements, in the order of the list.
+     */
+    int[] toArray()
+    {
+        return Arrays.copyOf(elements, size);
+    }
+
+    /**
+     * Get the distinct elements of the list in increasing order.
+     *
+     * @return the sorted elements, each once.
+     */
+    int[] sortedDistinct()
+    {
+        int[] sorted = toArray();
+        Arrays.sort(sorted);
+        int kept = 0;
+        for (int i = 0; i < sorted.length; i++)
+        {
+            if (kept == 0 || sorted[kept - 1] != sorted[i])
+            {
+                sorted[kept++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, kept);
+    }
+
+    /**
+     * Drops every element at or after new_size. Used when the watch list is
+     * compacted in place during propagation.
+     *
+     * @param new_size the new number of elements, which must not be larger
+     * than the current size.
+     */
+    void shrink(int new_size)
+    {
+        size = new_size;
+    }
+
+    /**
+     * Removes every element from the list.
+     */
+    void clear()
+    {
+        size = 0;
+    }
+}
@@ -0,0 +1,90 @@
+package dp_solver;
+
+/**
+ * Literals numbers the literals of a formula from 0, so that they can index
+ * arrays: 2 * (variable - 1) for a positive literal and one more for a
+ * negative literal. The two literals of a variable are next to each other,
+ * the variable of a code is code / 2 and its negation is code ^ 1. Every
+ * per-literal array of the solver uses this numbering, from the watch lists
+ * of the Formula to the occurrence lists of preprocessing and local search
+ * and the literals stored in the ClauseArena. Literals also cleans up the
+ * clauses of the input, which may repeat a literal.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+final class Literals
+{
+
+    /**
+     * Literals only has static methods.
+     */
+    private Literals()
+    {
+    }
+
+    /**
+     * Get the code of a literal.
+     *
+     * @param literal the literal, negative if the variable is negated.
+     * @return the code of the literal.
+     */
+    static int code(int literal)
+    {
+        return (literal > 0) ? 2 * (literal - 1) : 2 * (-literal - 1) + 1;
+    }
+
+    /**
+     * Get the code of a literal of a variable.
+     *
+     * @param var_index the index of the variable.
+     * @param negated true for the negative literal of the variable.
+     * @return the code of the literal.
+     */
+    static int code(int var_index, boolean negated)
+    {
+        return 2 * var_index + (negated ? 1 : 0);
+    }
+
+    /**
+     * Get the literal of a code.
+     *
+     * @param code the code of a literal.
+     * @return the literal, negative if the variable is negated.
+     */
+    static int literal(int code)
+    {
+        return ((code & 1) == 0) ? (code >> 1) + 1 : -((code >> 1) + 1);
+    }
+
+    /**
+     * Get a clause without repeated literals.
+     *
+     * @param clause the literals of the clause.
+     * @return the distinct literals in increasing order, or null if the
+     * clause contains a variable and its negation and so is always
+     * satisfied.
+     */
+    static int[] withoutRepeats(int[] clause)
+    {
+        IntList kept = new IntList(clause.length);
+        for (int literal : clause)
+        {
+            boolean repeated = false;
+            for (int i = 0; i < kept.size(); i++)
+            {
+                if (kept.get(i) == -literal)
+                {
+                    return null;
+                }
+                repeated = repeated || kept.get(i) == literal;
+            }
+            if (!repeated)
+            {
+                kept.add(literal);
+            }
+        }
+        return kept.sortedDistinct();
+    }
+}
@@ -0,0 +1,415 @@
+package dp_solver;
+
+import static java.lang.Math.abs;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * LocalSearch looks for a solution of a formula by stochastic local search
+ * instead of backtracking. It starts from a random assignment of every
+ * variable and repeatedly picks a random unsatisfied clause and flips one of
+ * its variables, chosen by a LocalSearchRule, until no clause is left
+ * unsatisfied. It cannot show that a formula is unsatisfiable, but on
+ * satisfiable formulas it often finds a solution far sooner than the
+ * systematic search.
+ *
+ * Every clause keeps the number of its true literals and the sum of the
+ * variables that make them true, so that a clause with a single true literal
+ * knows which variable that is. From those, the break count of every
+ * variable is kept up to date at each flip by visiting only the clauses of
+ * the flipped variable. The unsatisfied clauses are kept in an array with
+ * the position of each clause in it, so a clause is added at the end and
+ * removed by moving the last clause into its place.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class LocalSearch
+{
+
+    /**
+     * Stores the literals of every clause, without repeated literals.
+     */
+    private final int[][] clauses;
+    /**
+     * True if the formula has an empty clause, which no assignment
+     * satisfies.
+     */
+    private final boolean contradictory;
+    /**
+     * Stores, for every literal, the clauses that contain it. The list for a
+     * literal is found with Literals.code().
+     */
+    private final IntList[] occurrences;
+    /**
+     * The current truth value of every variable.
+     */
+    private final boolean[] values;
+    /**
+     * The number of true literals in every clause.
+     */
+    private final int[] true_counts;
+    /**
+     * The sum of the indices of the variables that make the literals of
+     * every clause true. When a clause has one true literal, this is its
+     * variable.
+     */
+    private final int[] true_sums;
+    /**
+     * The number of clauses every variable alone satisfies.
+     */
+    private final int[] break_counts;
+    /**
+     * The unsatisfied clauses, in the first unsatisfied_count positions.
+     */
+    private final int[] unsatisfied;
+    /**
+     * The number of unsatisfied clauses.
+     */
+    private int unsatisfied_count;
+    /**
+     * The position of every unsatisfied clause in unsatisfied, or -1 for a
+     * satisfied clause.
+     */
+    private final int[] positions;
+    /**
+     * The assignment that left the fewest clauses unsatisfied so far.
+     */
+    private final boolean[] best_values;
+    /**
+     * The number of clauses best_values leaves unsatisfied.
+     */
+    private int best_unsatisfied;
+    /**
+     * The rule that picks the variable to flip.
+     */
+    private final LocalSearchRule rule;
+    /**
+     * The source of every random choice, seeded so that a search can be
+     * repeated.
+     */
+    private final Random random;
+    /**
+     * The probSAT weight of every break count, indexed by the count.
+     */
+    private final double[] break_weights;
+    /**
+     * The probSAT weights of the variables of the clause being repaired.
+     */
+    private final double[] candidate_weights;
+    /**
+     * The number of flips made so far.
+     */
+    private long flips;
+    /**
+     * The probability that WalkSAT flips a random variable of the clause
+     * instead of one with the fewest breaks.
+     */
+    private static final double WALKSAT_NOISE = 0.567;
+    /**
+     * The base that probSAT adds to a break count before weighting it.
+     */
+    private static final double PROBSAT_EPSILON = 1.0;
+    /**
+     * The exponent of the polynomial falloff of probSAT weights.
+     */
+    private static final double PROBSAT_CB = 2.38;
+    /**
+     * The number of flips after which the search starts over from a new
+     * random assignment.
+     */
+    private static final long FLIPS_PER_TRY = 1L << 22;
+    /**
+     * The number of flips between two looks at the clock.
+     */
+    private static final int CHECK_INTERVAL = 1 << 10;
+
+    /**
+     * Initializes a local search over the input clauses of a formula.
+     *
+     * @param formula the formula, read and simplified but not yet searched.
+     * @param rule the rule that picks the variable to flip.
+     * @param seed the seed of the random choices.
+     */
+    LocalSearch(Formula formula, LocalSearchRule rule, long seed)
+    {
+        int variables = formula.getVariableCount();
+        List<int[]> kept = new ArrayList<int[]>();
+        boolean empty = false;
+        int longest = 0;
+        for (int i = 0; i < formula.getOriginalClauseCount(); i++)
+        {
+            int[] clause = Literals.withoutRepeats(formula.getOriginalClause(i));
+            if (clause != null)
+            {
+                empty = empty || clause.length == 0;
+                longest = Math.max(longest, clause.length);
+                kept.add(clause);
+            }
+        }
+        this.clauses = kept.toArray(new int[kept.size()][]);
+        this.contradictory = empty;
+        this.occurrences = new IntList[2 * variables];
+        for (int literal = 0; literal < occurrences.length; literal++)
+        {
+            occurrences[literal] = new IntList(0);
+        }
+        int most = 0;
+        for (int c = 0; c < clauses.length; c++)
+        {
+            for (int literal : clauses[c])
+            {
+                IntList containing = occurrences[Literals.code(literal)];
+                containing.add(c);
+                most = Math.max(most, containing.size());
+            }
+        }
+        this.values = new boolean[variables];
+        this.true_counts = new int[clauses.length];
+        this.true_sums = new int[clauses.length];
+        this.break_counts = new int[variables];
+        this.unsatisfied = new int[clauses.length];
+        this.positions = new int[clauses.length];
+        this.best_values = new boolean[variables];
+        this.best_unsatisfied = Integer.MAX_VALUE;
+        this.rule = rule;
+        this.random = new Random(seed);
+        this.break_weights = new double[most + 1];
+        for (int breaks = 0; breaks <= most; breaks++)
+        {
+            break_weights[breaks] = Math.pow(PROBSAT_EPSILON + breaks,
+                    -PROBSAT_CB);
+        }
+        this.candidate_weights = new double[longest];
+        this.flips = 0;
+    }
+
+    /**
+     * Flips variables until every clause is satisfied, the time is up or
+     * the search is stopped.
+     *
+     * @param deadline the time in milliseconds at which to give up, or
+     * Long.MAX_VALUE to search until a solution is found.
+     * @param stopped becomes true when the search should be given up, or
+     * null.
+     * @return true if a solution was found.
+     */
+    boolean search(long deadline, AtomicBoolean stopped)
+    {
+        if (contradictory)
+        {
+            return false;
+        }
+        long try_end = flips;
+        while (true)
+        {
+            if (flips == try_end)
+            {
+                randomize();
+                try_end = flips + FLIPS_PER_TRY;
+            }
+            if (unsatisfied_count < best_unsatisfied)
+            {
+                best_unsatisfied = unsatisfied_count;
+                System.arraycopy(values, 0, best_values, 0, values.length);
+            }
+            if (unsatisfied_count == 0)
+            {
+                return true;
+            }
+            if (flips % CHECK_INTERVAL == 0
+                    && ((stopped != null && stopped.get())
+                    || System.currentTimeMillis() >= deadline))
+            {
+                return false;
+            }
+            int[] clause = clauses[unsatisfied[random.nextInt(
+                    unsatisfied_count)]];
+            flip((rule == LocalSearchRule.WALKSAT)
+                    ? pickWalksat(clause) : pickProbsat(clause));
+            flips++;
+        }
+    }
+
+    /**
+     * Get the assignment that left the fewest clauses unsatisfied, which is
+     * a solution if search() returned true.
+     *
+     * @return the truth value of every variable, where the value of variable
+     * v is at index v - 1.
+     */
+    boolean[] getBestAssignment()
+    {
+        return best_values.clone();
+    }
+
+    /**
+     * Picks a variable of an unsatisfied clause by the WalkSAT rule.
+     *
+     * @param clause the literals of the clause.
+     * @return the index of the variable to flip.
+     */
+    private int pickWalksat(int[] clause)
+    {
+        int best = -1;
+        int best_breaks = Integer.MAX_VALUE;
+        int ties = 0;
+        for (int literal : clause)
+        {
+            int var_index = abs(literal) - 1;
+            int breaks = break_counts[var_index];
+            if (breaks < best_breaks)
+            {
+                best = var_index;
+                best_breaks = breaks;
+                ties = 1;
+            }
+            else if (breaks == best_breaks && random.nextInt(++ties) == 0)
+            {
+                best = var_index;
+            }
+        }
+        if (best_breaks > 0 && random.nextDouble() < WALKSAT_NOISE)
+        {
+            return abs(clause[random.nextInt(clause.length)]) - 1;
+        }
+        return best;
+    }
+
+    /**
+     * Picks a variable of an unsatisfied clause by the probSAT rule.
+     *
+     * @param clause the literals of the clause.
+     * @return the index of the variable to flip.
+     */
+    private int pickProbsat(int[] clause)
+    {
+        double total = 0;
+        for (int i = 0; i < clause.length; i++)
+        {
+            candidate_weights[i] = break_weights[
+                    break_counts[abs(clause[i]) - 1]];
+            total += candidate_weights[i];
+        }
+        double point = random.nextDouble() * total;
+        for (int i = 0; i < clause.length - 1; i++)
+        {
+            point -= candidate_weights[i];
+            if (point < 0)
+            {
+                return abs(clause[i]) - 1;
+            }
+        }
+        return abs(clause[clause.length - 1]) - 1;
+    }
+
+    /**
+     * Gives every variable a random truth value and computes the counts of
+     * every clause and variable from scratch.
+     */
+    private void randomize()
+    {
+        for (int var_index = 0; var_index < values.length; var_index++)
+        {
+            values[var_index] = random.nextBoolean();
+            break_counts[var_index] = 0;
+        }
+        unsatisfied_count = 0;
+        for (int c = 0; c < clauses.length; c++)
+        {
+            int count = 0;
+            int sum = 0;
+            for (int literal : clauses[c])
+            {
+                if (values[abs(literal) - 1] == (literal > 0))
+                {
+                    count++;
+                    sum += abs(literal) - 1;
+                }
+            }
+            true_counts[c] = count;
+            true_sums[c] = sum;
+            positions[c] = -1;
+            if (count == 0)
+            {
+                addUnsatisfied(c);
+            }
+            else if (count == 1)
+            {
+                break_counts[sum]++;
+            }
+        }
+    }
+
+    /**
+     * Flips a variable and updates the counts of the clauses it is in.
+     *
+     * @param var_index the index of the variable.
+     */
+    private void flip(int var_index)
+    {
+        values[var_index] = !values[var_index];
+        int made_true = Literals.code(var_index, !values[var_index]);
+        IntList satisfied = occurrences[made_true];
+        for (int i = 0; i < satisfied.size(); i++)
+        {
+            int c = satisfied.get(i);
+            int count = ++true_counts[c];
+            true_sums[c] += var_index;
+            if (count == 1)
+            {
+                removeUnsatisfied(c);
+                break_counts[var_index]++;
+            }
+            else if (count == 2)
+            {
+                // The other true literal no longer holds the clause alone.
+                break_counts[true_sums[c] - var_index]--;
+            }
+        }
+        IntList falsified = occurrences[made_true ^ 1];
+        for (int i = 0; i < falsified.size(); i++)
+        {
+            int c = falsified.get(i);
+            int count = --true_counts[c];
+            true_sums[c] -= var_index;
+            if (count == 0)
+            {
+                addUnsatisfied(c);
+                break_counts[var_index]--;
+            }
+            else if (count == 1)
+            {
+                break_counts[true_sums[c]]++;
+            }
+        }
+    }
+
+    /**
+     * Adds a clause to the end of the unsatisfied clauses.
+     *
+     * @param c the number of the clause.
+     */
+    private void addUnsatisfied(int c)
+    {
+        positions[c] = unsatisfied_count;
+        unsatisfied[unsatisfied_count++] = c;
+    }
+
+    /**
+     * Removes a clause from the unsatisfied clauses by moving the last one
+     * into its place.
+     *
+     * @param c the number of the clause.
+     */
+    private void removeUnsatisfied(int c)
+    {
+        int last = unsatisfied[--unsatisfied_count];
+        unsatisfied[positions[c]] = last;
+        positions[last] = positions[c];
+        positions[c] = -1;
+    }
+}
@@ -0,0 +1,63 @@
+package dp_solver;
+
+/**
+ * LocalSearchRule names the ways the local search can pick which variable of
+ * an unsatisfied clause to flip. Both look only at the break count of each
+ * variable: the number of clauses that are satisfied by that variable alone
+ * and would become unsatisfied if it were flipped.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+enum LocalSearchRule
+{
+
+    /**
+     * WalkSAT with the SKC rule: flip a variable that breaks no clause if
+     * there is one; otherwise flip a random variable of the clause with a
+     * fixed probability, and a variable with the fewest breaks the rest of
+     * the time.
+     */
+    WALKSAT("walksat"),
+    /**
+     * probSAT: flip a variable of the clause at random, with a probability
+     * that falls off polynomially with its break count.
+     */
+    PROBSAT("probsat");
+
+    /**
+     * The name of the rule on the command line.
+     */
+    private final String name;
+
+    /**
+     * Initializes the rule with its command-line name.
+     *
+     * @param name the name of the rule on the command line.
+     */
+    LocalSearchRule(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Finds the rule with the given command-line name.
+     *
+     * @param name the name of the rule on the command line.
+     * @return the rule with that name.
+     * @throws IllegalArgumentException if no rule has that name.
+     */
+    static LocalSearchRule forName(String name)
+    {
+        for (LocalSearchRule rule : values())
+        {
+            if (rule.name.equals(name))
+            {
+                return rule;
+            }
+        }
+        throw new IllegalArgumentException("Unknown local search rule: "
+                + name);
+    }
+}
@@ -0,0 +1,707 @@
+package dp_solver;
+
+import static java.lang.Math.abs;
+import java.io.File;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ModelCounter counts the satisfying assignments of a formula instead of
+ * finding one. It has a backtracking search of its own, which propagates
+ * units like dp() but does not stop at the first solution: every branch
+ * variable is tried with both values and the counts of the two branches are
+ * added. Like dp(), it keeps its branches on a stack of its own rather than
+ * the call stack, so long chains of decisions do not overflow it.
+ *
+ * Trying every assignment is only feasible for small formulas, so the search
+ * splits the clauses that are left after each assignment into components
+ * that share no unassigned variable. The count of the formula is the product
+ * of the counts of its components, which are searched one at a time, and
+ * variables that are left in no clause double the count. The counts of
+ * components are cached, since the same component is met again in many
+ * branches of the search. A component is identified by its variables and the
+ * numbers of its clauses: every other variable of those clauses is false, so
+ * together they fix what the component's clauses are. The cache is bounded
+ * and forgets the components it used least recently.
+ *
+ * The formula is never preprocessed, since preprocessing keeps whether the
+ * formula is satisfiable but not how many solutions it has.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class ModelCounter
+{
+
+    /**
+     * The key under which the count of a component is cached: the sorted
+     * variables of the component followed by the sorted numbers of its
+     * clauses.
+     */
+    private static final class Component
+    {
+
+        /**
+         * The number of variables, then the variables and the clause numbers.
+         */
+        private final int[] key;
+        /**
+         * The hash code of the key.
+         */
+        private final int hash;
+
+        /**
+         * Initializes the key of a component.
+         *
+         * @param variables the sorted variables of the component.
+         * @param clauses the sorted numbers of its clauses.
+         */
+        Component(int[] variables, int[] clauses)
+        {
+            key = new int[1 + variables.length + clauses.length];
+            key[0] = variables.length;
+            System.arraycopy(variables, 0, key, 1, variables.length);
+            System.arraycopy(clauses, 0, key, 1 + variables.length,
+                    clauses.length);
+            hash = Arrays.hashCode(key);
+        }
+
+        /**
+         * Get the number of bytes the key takes in the cache, including the
+         * cache entry and the count stored with it.
+         *
+         * @return the estimated size in bytes.
+         */
+        long size()
+        {
+            return 4L * key.length + ENTRY_OVERHEAD;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            return other instanceof Component
+                    && Arrays.equals(key, ((Component) other).key);
+        }
+    }
+    /**
+     * The search of one component: its branch variable is tried with both
+     * values, and under each value the components that are left are counted
+     * and multiplied.
+     */
+    private static final class Frame
+    {
+
+        /**
+         * A variable of the component, from which it is found.
+         */
+        final int start;
+        /**
+         * The branch variable, which is first made true.
+         */
+        final int branch;
+        /**
+         * The size of the trail before the branch variable was assigned.
+         */
+        final int trail_mark;
+        /**
+         * True once the branch variable has been made false.
+         */
+        boolean negated;
+        /**
+         * The counts of the values of the branch variable that are finished.
+         */
+        BigInteger solutions;
+        /**
+         * A variable of every component left under the current value.
+         */
+        int[] components;
+        /**
+         * The position in components of the next component to count.
+         */
+        int next;
+        /**
+         * The product of the counts of the components counted so far under
+         * the current value, and of its free variables.
+         */
+        BigInteger product;
+
+        /**
+         * Initializes the search of a component.
+         *
+         * @param start a variable of the component.
+         * @param branch the branch variable.
+         * @param trail_mark the size of the trail.
+         */
+        Frame(int start, int branch, int trail_mark)
+        {
+            this.start = start;
+            this.branch = branch;
+            this.trail_mark = trail_mark;
+            this.negated = false;
+            this.solutions = BigInteger.ZERO;
+        }
+    }
+    /**
+     * Stores the literals of every clause, without repeated literals.
+     */
+    private int[][] clauses;
+    /**
+     * Stores, for every variable, the numbers of the clauses that contain it.
+     * The list of variable v is at index v - 1.
+     */
+    private IntList[] occurrences;
+    /**
+     * The truth value of every variable: Formula.TRUE, Formula.FALSE or
+     * Formula.UNSET.
+     */
+    private int[] truth_values;
+    /**
+     * The literals made true, in the order they were assigned.
+     */
+    private IntList trail;
+    /**
+     * The position on the trail of every assigned variable.
+     */
+    private int[] positions;
+    /**
+     * The mark of the last component search, for variable_marks and
+     * clause_marks.
+     */
+    private int mark;
+    /**
+     * The mark of the component search that last reached every variable.
+     */
+    private int[] variable_marks;
+    /**
+     * The mark of the component search that last reached every clause.
+     */
+    private int[] clause_marks;
+    /**
+     * The variables reached by the last component search.
+     */
+    private IntList reached;
+    /**
+     * The clauses reached by the last component search.
+     */
+    private IntList reached_clauses;
+    /**
+     * The number of clauses of the component every variable is in, while a
+     * branch variable is picked, and otherwise 0.
+     */
+    private int[] scores;
+    /**
+     * The counts of the components met so far, the least recently used
+     * first.
+     */
+    private final LinkedHashMap<Component, BigInteger> cache;
+    /**
+     * The estimated number of bytes the cache takes.
+     */
+    private long cache_bytes;
+    /**
+     * The number of bytes the cache may take before it forgets components.
+     */
+    private final long cache_limit;
+    /**
+     * The estimated number of bytes of a cache entry besides its key.
+     */
+    private static final int ENTRY_OVERHEAD = 120;
+
+    /**
+     * Initializes a counter.
+     *
+     * @param options the settings of the count, including the size of the
+     * cache.
+     */
+    ModelCounter(Options options)
+    {
+        this.cache = new LinkedHashMap<Component, BigInteger>(16, 0.75f, true);
+        this.cache_bytes = 0;
+        this.cache_limit = options.cache_megabytes << 20;
+    }
+
+    /**
+     * Counts the solutions of the formula in a file and prints the count.
+     *
+     * @param file_name the name of the file containing the formula.
+     */
+    void solve(String file_name)
+    {
+        Formula formula = new Parser(new File(file_name)).parseFile();
+        BigInteger solutions = count(formula);
+        if (solutions.signum() > 0)
+        {
+            System.out.println("Formula is satisfiable");
+        }
+        else
+        {
+            System.out.println("Formula is unsatisfiable");
+        }
+        System.out.println("Solutions: " + solutions);
+    }
+
+    /**
+     * Counts the assignments of every variable of a formula that satisfy
+     * all of its clauses.
+     *
+     * @param formula the formula, as read from the input.
+     * @return the number of solutions.
+     */
+    BigInteger count(Formula formula)
+    {
+        int variables = formula.getVariableCount();
+        List<int[]> kept = new ArrayList<int[]>();
+        for (int i = 0; i < formula.getOriginalClauseCount(); i++)
+        {
+            int[] clause = Literals.withoutRepeats(formula.getOriginalClause(i));
+            if (clause == null)
+            {
+                continue;
+            }
+            if (clause.length == 0)
+            {
+                return BigInteger.ZERO;
+            }
+            kept.add(clause);
+        }
+        clauses = kept.toArray(new int[kept.size()][]);
+        occurrences = new IntList[variables];
+        for (int v = 0; v < variables; v++)
+        {
+            occurrences[v] = new IntList(0);
+        }
+        for (int c = 0; c < clauses.length; c++)
+        {
+            for (int literal : clauses[c])
+            {
+                occurrences[abs(literal) - 1].add(c);
+            }
+        }
+        truth_values = new int[variables];
+        Arrays.fill(truth_values, Formula.UNSET);
+        trail = new IntList();
+        positions = new int[variables];
+        mark = 0;
+        variable_marks = new int[variables];
+        clause_marks = new int[clauses.length];
+        reached = new IntList();
+        reached_clauses = new IntList();
+        scores = new int[variables];
+
+        for (int[] clause : clauses)
+        {
+            if (clause.length == 1 && !assign(clause[0]))
+            {
+                return BigInteger.ZERO;
+            }
+        }
+        IntList all = new IntList(variables);
+        for (int v = 0; v < variables; v++)
+        {
+            all.add(v + 1);
+        }
+        Frame root = new Frame(0, 0, trail.size());
+        split(root, all);
+        return countFrom(root);
+    }
+
+    /**
+     * Counts the solutions of the components of a search that is split into
+     * its first components. The search keeps a stack of frames instead of
+     * calling itself for every branch, so that its depth is not limited by
+     * the call stack. Every frame counts one component: it tries its branch
+     * variable with both values, and under each value counts the components
+     * the rest of the component splits into, one at a time.
+     *
+     * @param root the frame of the search, split into components.
+     * @return the number of solutions of the components of the root, times
+     * the number of their free variables.
+     */
+    private BigInteger countFrom(Frame root)
+    {
+        List<Frame> frames = new ArrayList<Frame>();
+        frames.add(root);
+        // The count of the component whose frame was popped last.
+        BigInteger counted = null;
+        while (true)
+        {
+            Frame frame = frames.get(frames.size() - 1);
+            if (counted != null)
+            {
+                frame.product = frame.product.multiply(counted);
+                counted = null;
+            }
+            if (frame.product.signum() != 0
+                    && frame.next < frame.components.length)
+            {
+                int start = frame.components[frame.next++];
+                Component key = componentOf(start);
+                counted = cache.get(key);
+                if (counted == null)
+                {
+                    Frame child = new Frame(start, branchVariable(),
+                            trail.size());
+                    frames.add(child);
+                    enter(child, child.branch);
+                }
+                continue;
+            }
+
+            // Every component under the current value is counted.
+            if (frame == root)
+            {
+                return frame.product;
+            }
+            frame.solutions = frame.solutions.add(frame.product);
+            undo(frame.trail_mark);
+            if (!frame.negated)
+            {
+                frame.negated = true;
+                enter(frame, -frame.branch);
+                continue;
+            }
+            frames.remove(frames.size() - 1);
+            // The trail is back where the component was found, so it is
+            // found again rather than kept while its branches are counted.
+            remember(componentOf(frame.start), frame.solutions);
+            counted = frame.solutions;
+        }
+    }
+
+    /**
+     * Makes the branch literal of a frame true and splits what is left of
+     * its component into components.
+     *
+     * @param frame the frame, with the trail at its mark.
+     * @param literal the literal, negative if the variable is negated.
+     */
+    private void enter(Frame frame, int literal)
+    {
+        if (!assign(literal))
+        {
+            frame.components = new int[0];
+            frame.product = BigInteger.ZERO;
+            return;
+        }
+        // Only a variable in a clause with a variable assigned since the
+        // mark can have left the component, and every part of the component
+        // has such a variable.
+        IntList candidates = new IntList();
+        for (int i = frame.trail_mark; i < trail.size(); i++)
+        {
+            IntList containing = occurrences[abs(trail.get(i)) - 1];
+            for (int j = 0; j < containing.size(); j++)
+            {
+                int c = containing.get(j);
+                if (isSatisfiedBefore(c, frame.trail_mark))
+                {
+                    continue;
+                }
+                for (int other : clauses[c])
+                {
+                    if (truth_values[abs(other) - 1] == Formula.UNSET)
+                    {
+                        candidates.add(abs(other));
+                    }
+                }
+            }
+        }
+        split(frame, candidates);
+    }
+
+    /**
+     * Splits the clauses the given variables are left in into components,
+     * and gives a frame one variable of every component to count it from.
+     * Variables that are left in no clause are free and double the count.
+     *
+     * @param frame the frame, whose product is set to the number of
+     * assignments of the free variables.
+     * @param candidates the variables, which may repeat, that between them
+     * reach every unassigned variable to be counted.
+     */
+    private void split(Frame frame, IntList candidates)
+    {
+        mark++;
+        int free = 0;
+        IntList starts = new IntList();
+        for (int i = 0; i < candidates.size(); i++)
+        {
+            int start = candidates.get(i);
+            if (truth_values[start - 1] != Formula.UNSET
+                    || variable_marks[start - 1] == mark)
+            {
+                continue;
+            }
+            reach(start);
+            if (reached_clauses.size() == 0)
+            {
+                free++;
+            }
+            else
+            {
+                starts.add(start);
+            }
+        }
+        frame.components = starts.toArray();
+        frame.next = 0;
+        frame.product = BigInteger.ONE.shiftLeft(free);
+    }
+
+    /**
+     * Finds the component of an unassigned variable.
+     *
+     * @param start the variable.
+     * @return the key of the component.
+     */
+    private Component componentOf(int start)
+    {
+        mark++;
+        reach(start);
+        return new Component(reached.sortedDistinct(),
+                reached_clauses.sortedDistinct());
+    }
+
+    /**
+     * Collects the unassigned variables and unsatisfied clauses that can be
+     * reached from a variable through unsatisfied clauses, and marks them
+     * with the current mark.
+     * Pre: the variable is unassigned and does not have the current mark.
+     *
+     * @param start the variable.
+     */
+    private void reach(int start)
+    {
+        reached.clear();
+        reached_clauses.clear();
+        variable_marks[start - 1] = mark;
+        reached.add(start);
+        for (int next = 0; next < reached.size(); next++)
+        {
+            IntList containing = occurrences[reached.get(next) - 1];
+            for (int i = 0; i < containing.size(); i++)
+            {
+                int c = containing.get(i);
+                if (clause_marks[c] == mark || isSatisfied(c))
+                {
+                    continue;
+                }
+                clause_marks[c] = mark;
+                reached_clauses.add(c);
+                for (int literal : clauses[c])
+                {
+                    int v = abs(literal);
+                    if (truth_values[v - 1] == Formula.UNSET
+                            && variable_marks[v - 1] != mark)
+                    {
+                        variable_marks[v - 1] = mark;
+                        reached.add(v);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Picks the branch variable of the component found last: the variable
+     * in most of its clauses, and of those the lowest.
+     *
+     * @return the variable.
+     */
+    private int branchVariable()
+    {
+        for (int i = 0; i < reached_clauses.size(); i++)
+        {
+            for (int literal : clauses[reached_clauses.get(i)])
+            {
+                if (truth_values[abs(literal) - 1] == Formula.UNSET)
+                {
+                    scores[abs(literal) - 1]++;
+                }
+            }
+        }
+        int best = 0;
+        for (int i = 0; i < reached.size(); i++)
+        {
+            int v = reached.get(i);
+            if (best == 0 || scores[v - 1] > scores[best - 1]
+                    || (scores[v - 1] == scores[best - 1] && v < best))
+            {
+                best = v;
+            }
+        }
+        for (int i = 0; i < reached.size(); i++)
+        {
+            scores[reached.get(i) - 1] = 0;
+        }
+        return best;
+    }
+
+    /**
+     * Makes a literal true and propagates the clauses it leaves with one
+     * unassigned literal.
+     *
+     * @param literal the literal, negative if the variable is negated.
+     * @return false if a clause became false.
+     */
+    private boolean assign(int literal)
+    {
+        int value = valueOf(literal);
+        if (value != Formula.UNSET)
+        {
+            return value == Formula.TRUE;
+        }
+        int next = trail.size();
+        set(literal);
+        while (next < trail.size())
+        {
+            IntList containing = occurrences[abs(trail.get(next++)) - 1];
+            for (int i = 0; i < containing.size(); i++)
+            {
+                int[] clause = clauses[containing.get(i)];
+                int unassigned = 0;
+                int last = 0;
+                boolean satisfied = false;
+                for (int j = 0; j < clause.length && !satisfied; j++)
+                {
+                    int clause_value = valueOf(clause[j]);
+                    if (clause_value == Formula.TRUE)
+                    {
+                        satisfied = true;
+                    }
+                    else if (clause_value == Formula.UNSET)
+                    {
+                        unassigned++;
+                        last = clause[j];
+                    }
+                }
+                if (satisfied || unassigned > 1)
+                {
+                    continue;
+                }
+                if (unassigned == 0)
+                {
+                    return false;
+                }
+                set(last);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes a literal true without propagating it.
+     *
+     * @param literal the literal, negative if the variable is negated.
+     */
+    private void set(int literal)
+    {
+        truth_values[abs(literal) - 1] = (literal > 0)
+                ? Formula.TRUE : Formula.FALSE;
+        positions[abs(literal) - 1] = trail.size();
+        trail.add(literal);
+    }
+
+    /**
+     * Unassigns the literals assigned after a point of the trail.
+     *
+     * @param start the size the trail had at that point.
+     */
+    private void undo(int start)
+    {
+        for (int i = start; i < trail.size(); i++)
+        {
+            truth_values[abs(trail.get(i)) - 1] = Formula.UNSET;
+        }
+        trail.shrink(start);
+    }
+
+    /**
+     * Get the value of a literal.
+     *
+     * @param literal the literal, negative if the variable is negated.
+     * @return Formula.TRUE, Formula.FALSE or Formula.UNSET.
+     */
+    private int valueOf(int literal)
+    {
+        int value = truth_values[abs(literal) - 1];
+        if (value == Formula.UNSET || literal > 0)
+        {
+            return value;
+        }
+        return (value == Formula.TRUE) ? Formula.FALSE : Formula.TRUE;
+    }
+
+    /**
+     * Tests whether a clause has a true literal.
+     *
+     * @param c the number of the clause.
+     * @return true if the clause is satisfied.
+     */
+    private boolean isSatisfied(int c)
+    {
+        for (int literal : clauses[c])
+        {
+            if (valueOf(literal) == Formula.TRUE)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests whether a clause has a literal that was true before a point of
+     * the trail.
+     *
+     * @param c the number of the clause.
+     * @param trail_mark the size the trail had at that point.
+     * @return true if the clause was satisfied at that point.
+     */
+    private boolean isSatisfiedBefore(int c, int trail_mark)
+    {
+        for (int literal : clauses[c])
+        {
+            if (valueOf(literal) == Formula.TRUE
+                    && positions[abs(literal) - 1] < trail_mark)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Caches the count of a component, forgetting the least recently used
+     * components while the cache is over its limit.
+     *
+     * @param key the component.
+     * @param solutions the number of solutions of the component.
+     */
+    private void remember(Component key, BigInteger solutions)
+    {
+        cache.put(key, solutions);
+        cache_bytes += key.size() + solutions.bitLength() / 8;
+        Iterator<Map.Entry<Component, BigInteger>> eldest
+                = cache.entrySet().iterator();
+        while (cache_bytes > cache_limit && eldest.hasNext())
+        {
+            Map.Entry<Component, BigInteger> entry = eldest.next();
+            cache_bytes -= entry.getKey().size()
+                    + entry.getValue().bitLength() / 8;
+            eldest.remove();
+        }
+    }
+}
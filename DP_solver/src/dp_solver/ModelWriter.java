@@ -0,0 +1,102 @@
+package dp_solver;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * ModelWriter streams the solutions found by an enumeration to a character
+ * sink, one DIMACS value line per solution: "v", the literal of every
+ * variable that is written, and a closing 0. Only the variables of the
+ * projection are written, in the order they were given. The lines go through
+ * a buffer, so that writing a solution costs no more than the digits it is
+ * made of and no solution has to be kept once it is written.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class ModelWriter
+{
+
+    /**
+     * The buffered sink the lines are written to.
+     */
+    private final BufferedWriter output;
+    /**
+     * The variables that are written, numbered from 1.
+     */
+    private final int[] projection;
+    /**
+     * The number of solutions written so far.
+     */
+    private long written;
+
+    /**
+     * Initializes a writer.
+     *
+     * @param sink the sink the lines are written to.
+     * @param projection the variables to be written, numbered from 1.
+     */
+    ModelWriter(Writer sink, int[] projection)
+    {
+        this.output = new BufferedWriter(sink, 1 << 16);
+        this.projection = projection;
+        this.written = 0;
+    }
+
+    /**
+     * Get the variables that are written.
+     *
+     * @return the variables, numbered from 1. The array must not be
+     * modified.
+     */
+    int[] getProjection()
+    {
+        return projection;
+    }
+
+    /**
+     * Get the number of solutions written so far.
+     *
+     * @return the number of solutions.
+     */
+    long getWritten()
+    {
+        return written;
+    }
+
+    /**
+     * Writes the values the variables of the projection have in a formula.
+     * Pre: every variable of the projection is assigned.
+     *
+     * @param formula the formula whose assignment is a solution.
+     * @throws IOException if the sink cannot be written.
+     */
+    void write(Formula formula) throws IOException
+    {
+        output.write('v');
+        for (int variable : projection)
+        {
+            output.write(' ');
+            if (formula.literalValue(variable) == Formula.FALSE)
+            {
+                output.write('-');
+            }
+            output.write(Integer.toString(variable));
+        }
+        output.write(" 0");
+        output.newLine();
+        written++;
+    }
+
+    /**
+     * Writes out the lines still in the buffer.
+     *
+     * @throws IOException if the sink cannot be written.
+     */
+    void flush() throws IOException
+    {
+        output.flush();
+    }
+}
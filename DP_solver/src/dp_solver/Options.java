@@ -0,0 +1,697 @@
+package dp_solver;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Options stores the command-line settings of the DP_solver. Options are
+ * given before the name of the file containing the formula.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class Options
+{
+
+    /**
+     * The usage message printed when the arguments cannot be read.
+     */
+    static final String USAGE = "Usage: java DP_solver [options] cnf-formula\n"
+            + "  -cdcl    learn clauses from dead ends and backjump\n"
+            + "  -heuristic ordered|vsids|moms|jw|lookahead\n"
+            + "           how to pick branch variables (default: vsids with\n"
+            + "           -cdcl, ordered otherwise)\n"
+            + "  -restart none|luby|glucose\n"
+            + "           when -cdcl restarts (default: glucose)\n"
+            + "  -phase false|true|saved\n"
+            + "           the value branch variables are tried with first\n"
+            + "           (default: saved with -cdcl, false otherwise)\n"
+            + "  -learned-mb n\n"
+            + "           memory ceiling for learned clauses in megabytes\n"
+            + "           (default: 256)\n"
+            + "  -storage heap|direct\n"
+            + "           where clauses are kept: in the Java heap or in a\n"
+            + "           direct buffer outside it (default: heap)\n"
+            + "  -preprocess, -no-preprocess\n"
+            + "           whether to simplify the formula before searching it\n"
+            + "           (default: on with -cdcl, off otherwise)\n"
+            + "  -xor, -no-xor\n"
+            + "           whether to reason on XOR constraints found in the\n"
+            + "           formula with Gaussian elimination (default: on with\n"
+            + "           -cdcl, off otherwise)\n"
+            + "  -cardinality, -no-cardinality\n"
+            + "           whether to replace at-most-one groups of binary\n"
+            + "           clauses by counting constraints (default: on)\n"
+            + "  -seed n  randomize ties between branch variables, and the\n"
+            + "           choices of -local\n"
+            + "  -local walksat|probsat\n"
+            + "           look for a solution by local search with the given\n"
+            + "           flip rule before the systematic search\n"
+            + "  -local-ms n\n"
+            + "           give up local search after n milliseconds and\n"
+            + "           continue with the systematic search (default:\n"
+            + "           2000)\n"
+            + "  -portfolio n\n"
+            + "           run n differently configured clause-learning\n"
+            + "           solvers in parallel and take the first answer\n"
+            + "  -no-share\n"
+            + "           keep portfolio or cube solvers from sharing short\n"
+            + "           learned clauses\n"
+            + "  -cubes d split the formula on d lookahead variables into\n"
+            + "           up to 2^d cubes and solve them in parallel\n"
+            + "  -threads n\n"
+            + "           the number of threads that solve cubes, or the\n"
+            + "           formulas sent to -daemon (default: one per\n"
+            + "           processor)\n"
+            + "  -count   count the solutions instead of finding one\n"
+            + "  -cache-mb n\n"
+            + "           memory ceiling for the component counts cached\n"
+            + "           by -count in megabytes (default: 256)\n"
+            + "  -enumerate all|n\n"
+            + "           write every solution, or the first n, as DIMACS\n"
+            + "           v lines\n"
+            + "  -project list\n"
+            + "           enumerate only the values of the variables in a\n"
+            + "           list such as 1,4,10-20, each combination once\n"
+            + "  -output file\n"
+            + "           write enumerated solutions to a file instead of\n"
+            + "           the standard output\n"
+            + "  -brute   decide the formula by trying every assignment, for\n"
+            + "           formulas of up to 62 variables\n"
+            + "  -sat4j   decide the formula with the SAT4J library, which\n"
+            + "           org.sat4j.core.jar must put on the classpath\n"
+            + "  -auto    measure the formula and choose the engine and\n"
+            + "           options by a table of rules\n"
+            + "  -rules file\n"
+            + "           read the rules of -auto from a file, one per line,\n"
+            + "           such as \"ternary>=0.9 ratio<4.2 : -local probsat\"\n"
+            + "  -cache file\n"
+            + "           look the formula up in a file of earlier answers,\n"
+            + "           and add its answer if it is not there; used by\n"
+            + "           the searches for a single solution\n"
+            + "  -daemon port\n"
+            + "           instead of solving cnf-formula, answer formulas\n"
+            + "           sent to a port on the loopback address, each on a\n"
+            + "           connection closed for writing after it, with the\n"
+            + "           other options\n"
+            + "  -queue n the number of formulas -daemon lets wait for a\n"
+            + "           thread before it stops accepting more\n"
+            + "           (default: 64)\n"
+            + "  -proof file\n"
+            + "           write a binary DRAT proof of unsatisfiability to a\n"
+            + "           file; implies -cdcl -no-preprocess -no-xor\n"
+            + "           -no-cardinality";
+    /**
+     * The name of the file containing the formula.
+     */
+    String file_name;
+    /**
+     * True if dead ends should be analyzed to learn clauses and backjump,
+     * false for the chronological backtracking of dp().
+     */
+    boolean cdcl = false;
+    /**
+     * The branching heuristic, or null to use the default for the search.
+     */
+    Heuristic heuristic = null;
+    /**
+     * When the clause-learning search restarts.
+     */
+    RestartStrategy restart = RestartStrategy.GLUCOSE;
+    /**
+     * The value branch variables are tried with first: "false", "true" or
+     * "saved", or null to use the default for the search.
+     */
+    String phase = null;
+    /**
+     * The number of megabytes learned clauses may use before they are
+     * reduced regardless of the reduction schedule.
+     */
+    long learned_megabytes = 256;
+    /**
+     * The kind of memory the clauses are kept in.
+     */
+    ClauseStorage storage = ClauseStorage.HEAP;
+    /**
+     * True if the formula should be simplified before it is searched, or
+     * null to use the default for the search.
+     */
+    Boolean preprocess = null;
+    /**
+     * True if XOR constraints should be found and eliminated, or null to
+     * use the default for the search.
+     */
+    Boolean xor = null;
+    /**
+     * True if at-most-one constraints should be found and propagated by
+     * counting.
+     */
+    boolean cardinality = true;
+    /**
+     * The seed that breaks ties between branch variables, or 0 to break them
+     * by variable number.
+     */
+    long seed = 0;
+    /**
+     * The number of solvers to run in parallel.
+     */
+    int portfolio = 1;
+    /**
+     * True if portfolio solvers should share short learned clauses.
+     */
+    boolean share = true;
+    /**
+     * The number of variables the formula is split on for cube-and-conquer,
+     * or 0 to solve it as a whole.
+     */
+    int cube_depth = 0;
+    /**
+     * The number of threads that solve cubes, or the formulas sent to the
+     * daemon, or 0 for one per processor.
+     */
+    int threads = 0;
+    /**
+     * True if the solutions should be counted instead of finding one.
+     */
+    boolean count = false;
+    /**
+     * The number of megabytes the cached component counts may use.
+     */
+    long cache_megabytes = 256;
+    /**
+     * The largest number of solutions to enumerate, or 0 to find one
+     * solution only.
+     */
+    long enumerate = 0;
+    /**
+     * The variables whose values are enumerated, numbered from 1, or null
+     * for every variable.
+     */
+    int[] projection = null;
+    /**
+     * The name of the file enumerated solutions are written to, or null for
+     * the standard output.
+     */
+    String output_file = null;
+    /**
+     * The rule local search flips variables by, or null to search
+     * systematically from the start.
+     */
+    LocalSearchRule local = null;
+    /**
+     * The number of milliseconds local search may take before the
+     * systematic search takes over. Local search cannot tell that a formula
+     * is unsatisfiable, so it is always given a limit.
+     */
+    long local_milliseconds = 2000;
+    /**
+     * The name of the file a DRAT proof is written to, or null for no
+     * proof.
+     */
+    String proof_file = null;
+    /**
+     * True if the formula should be decided by trying every assignment.
+     */
+    boolean brute = false;
+    /**
+     * True if the formula should be decided by the SAT4J library.
+     */
+    boolean sat4j = false;
+    /**
+     * True if the engine and options should be chosen from the features of
+     * the formula.
+     */
+    boolean auto = false;
+    /**
+     * The name of the file the rules of -auto are read from, or null for the
+     * default rules.
+     */
+    String rules_file = null;
+    /**
+     * The name of the file earlier answers are looked up in and added to,
+     * or null to solve every formula.
+     */
+    String cache_file = null;
+    /**
+     * The port formulas are answered on, or 0 to solve the formula of the
+     * file.
+     */
+    int daemon_port = 0;
+    /**
+     * The number of formulas the daemon lets wait for a thread.
+     */
+    int queue_capacity = 64;
+
+    /**
+     * Reads the options and the file name from the command-line arguments.
+     *
+     * @param args the command-line arguments.
+     * @return the options that were read.
+     * @throws IllegalArgumentException if an option is not recognized or the
+     * file name is missing.
+     */
+    static Options parse(String[] args)
+    {
+        return parse(args, new Options());
+    }
+
+    /**
+     * Reads options from command-line arguments on top of options that were
+     * already set.
+     *
+     * @param args the command-line arguments.
+     * @param options the options to change, which are returned.
+     * @return the options that were read.
+     * @throws IllegalArgumentException if an option is not recognized or the
+     * file name is missing.
+     */
+    static Options parse(String[] args, Options options)
+    {
+        for (int i = 0; i < args.length; i++)
+        {
+            if (!args[i].startsWith("-"))
+            {
+                if (options.file_name != null)
+                {
+                    throw new IllegalArgumentException(
+                            "Only one cnf-formula can be given: " + args[i]);
+                }
+                options.file_name = args[i];
+            }
+            else if (args[i].equals("-cdcl"))
+            {
+                options.cdcl = true;
+            }
+            else if (args[i].equals("-heuristic"))
+            {
+                options.heuristic = Heuristic.forName(value(args, ++i));
+            }
+            else if (args[i].equals("-restart"))
+            {
+                options.restart = RestartStrategy.forName(value(args, ++i));
+            }
+            else if (args[i].equals("-phase"))
+            {
+                options.phase = value(args, ++i);
+                if (!options.phase.equals("false")
+                        && !options.phase.equals("true")
+                        && !options.phase.equals("saved"))
+                {
+                    throw new IllegalArgumentException(
+                            "Unknown phase: " + options.phase);
+                }
+            }
+            else if (args[i].equals("-learned-mb"))
+            {
+                options.learned_megabytes = number(args, ++i);
+            }
+            else if (args[i].equals("-storage"))
+            {
+                options.storage = ClauseStorage.forName(value(args, ++i));
+            }
+            else if (args[i].equals("-preprocess"))
+            {
+                options.preprocess = true;
+            }
+            else if (args[i].equals("-no-preprocess"))
+            {
+                options.preprocess = false;
+            }
+            else if (args[i].equals("-xor"))
+            {
+                options.xor = true;
+            }
+            else if (args[i].equals("-no-xor"))
+            {
+                options.xor = false;
+            }
+            else if (args[i].equals("-seed"))
+            {
+                options.seed = number(args, ++i);
+            }
+            else if (args[i].equals("-portfolio"))
+            {
+                options.portfolio = number(args, ++i);
+            }
+            else if (args[i].equals("-no-share"))
+            {
+                options.share = false;
+            }
+            else if (args[i].equals("-cubes"))
+            {
+                options.cube_depth = number(args, ++i);
+            }
+            else if (args[i].equals("-threads"))
+            {
+                options.threads = number(args, ++i);
+            }
+            else if (args[i].equals("-count"))
+            {
+                options.count = true;
+            }
+            else if (args[i].equals("-cache-mb"))
+            {
+                options.cache_megabytes = number(args, ++i);
+            }
+            else if (args[i].equals("-enumerate"))
+            {
+                options.enumerate = value(args, ++i).equals("all")
+                        ? Long.MAX_VALUE : number(args, i);
+            }
+            else if (args[i].equals("-project"))
+            {
+                options.projection = variables(args, ++i);
+            }
+            else if (args[i].equals("-output"))
+            {
+                options.output_file = value(args, ++i);
+            }
+            else if (args[i].equals("-local"))
+            {
+                options.local = LocalSearchRule.forName(value(args, ++i));
+            }
+            else if (args[i].equals("-local-ms"))
+            {
+                options.local_milliseconds = number(args, ++i);
+            }
+            else if (args[i].equals("-proof"))
+            {
+                options.proof_file = value(args, ++i);
+            }
+            else if (args[i].equals("-brute"))
+            {
+                options.brute = true;
+            }
+            else if (args[i].equals("-sat4j"))
+            {
+                options.sat4j = true;
+            }
+            else if (args[i].equals("-auto"))
+            {
+                options.auto = true;
+            }
+            else if (args[i].equals("-rules"))
+            {
+                options.rules_file = value(args, ++i);
+            }
+            else if (args[i].equals("-cache"))
+            {
+                options.cache_file = value(args, ++i);
+            }
+            else if (args[i].equals("-daemon"))
+            {
+                options.daemon_port = number(args, ++i);
+            }
+            else if (args[i].equals("-queue"))
+            {
+                options.queue_capacity = number(args, ++i);
+            }
+            else if (args[i].equals("-cardinality"))
+            {
+                options.cardinality = true;
+            }
+            else if (args[i].equals("-no-cardinality"))
+            {
+                options.cardinality = false;
+            }
+            else
+            {
+                throw new IllegalArgumentException(
+                        "Unknown option: " + args[i]);
+            }
+        }
+        if (options.daemon_port > 0)
+        {
+            if (!options.isSingleSearch() || options.proof_file != null
+                    || options.cache_file != null)
+            {
+                throw new IllegalArgumentException(
+                        "-daemon answers every formula with a single search");
+            }
+        }
+        else if (options.file_name == null)
+        {
+            throw new IllegalArgumentException("No cnf-formula given");
+        }
+        if (options.sat4j && !SAT4JSolver.isAvailable())
+        {
+            throw new IllegalArgumentException(
+                    "-sat4j needs org.sat4j.core.jar on the classpath");
+        }
+        if (options.proof_file != null)
+        {
+            if (options.portfolio > 1 || options.cube_depth > 0
+                    || options.count || options.enumerate > 0
+                    || options.brute || options.sat4j || options.auto
+                    || options.cache_file != null)
+            {
+                throw new IllegalArgumentException(
+                        "-proof needs a single clause-learning search");
+            }
+            // A proof checker can only follow clauses learned from dead
+            // ends, not the steps of simplification or of the constraints.
+            options.cdcl = true;
+            options.preprocess = false;
+            options.xor = false;
+            options.cardinality = false;
+        }
+        return options;
+    }
+
+    /**
+     * Get a copy of the options that can be changed without changing these.
+     *
+     * @return the copy.
+     */
+    Options copy()
+    {
+        Options copy = new Options();
+        copy.file_name = file_name;
+        copy.cdcl = cdcl;
+        copy.heuristic = heuristic;
+        copy.restart = restart;
+        copy.phase = phase;
+        copy.learned_megabytes = learned_megabytes;
+        copy.storage = storage;
+        copy.preprocess = preprocess;
+        copy.xor = xor;
+        copy.cardinality = cardinality;
+        copy.seed = seed;
+        copy.portfolio = portfolio;
+        copy.share = share;
+        copy.cube_depth = cube_depth;
+        copy.threads = threads;
+        copy.count = count;
+        copy.cache_megabytes = cache_megabytes;
+        copy.enumerate = enumerate;
+        copy.projection = projection;
+        copy.output_file = output_file;
+        copy.local = local;
+        copy.local_milliseconds = local_milliseconds;
+        copy.proof_file = proof_file;
+        copy.brute = brute;
+        copy.sat4j = sat4j;
+        copy.auto = auto;
+        copy.rules_file = rules_file;
+        copy.cache_file = cache_file;
+        copy.daemon_port = daemon_port;
+        copy.queue_capacity = queue_capacity;
+        return copy;
+    }
+
+    /**
+     * Tests whether the options solve the formula with a single search,
+     * rather than by counting or enumerating its solutions or by several
+     * solvers.
+     *
+     * @return true if the formula is solved by a single search.
+     */
+    boolean isSingleSearch()
+    {
+        return !count && enumerate == 0 && cube_depth == 0 && portfolio <= 1;
+    }
+
+    /**
+     * Get the branching heuristic to use. Clause learning defaults to VSIDS,
+     * since it has conflicts to learn activities from, and chronological
+     * backtracking defaults to the order of the file.
+     *
+     * @return the branching heuristic.
+     */
+    Heuristic getHeuristic()
+    {
+        if (heuristic != null)
+        {
+            return heuristic;
+        }
+        return cdcl ? Heuristic.VSIDS : Heuristic.ORDERED;
+    }
+
+    /**
+     * Tests whether branch variables should get their last truth value.
+     * Clause learning saves phases by default, since its backjumps and
+     * restarts would otherwise lose the progress of the previous assignment.
+     *
+     * @return true if phases should be saved.
+     */
+    boolean isPhaseSaving()
+    {
+        if (phase == null)
+        {
+            return cdcl;
+        }
+        return phase.equals("saved");
+    }
+
+    /**
+     * Get the value branch variables are tried with when they have no saved
+     * phase.
+     *
+     * @return the initial value of branch variables.
+     */
+    boolean getInitialPhase()
+    {
+        return "true".equals(phase);
+    }
+
+    /**
+     * Tests whether the formula should be simplified before it is searched.
+     * Clause learning preprocesses by default. The file order that dp()
+     * branches in by default loses its meaning once variables have been
+     * eliminated, so dp() does not.
+     *
+     * @return true if the formula should be preprocessed.
+     */
+    boolean isPreprocessing()
+    {
+        if (preprocess == null)
+        {
+            return cdcl;
+        }
+        return preprocess;
+    }
+
+    /**
+     * Tests whether XOR constraints should be found in the formula and
+     * reasoned on. Clause learning does so by default, since it reduces the
+     * explaining clauses along with the learned ones; dp() would keep them
+     * all.
+     *
+     * @return true if XOR constraints should be used.
+     */
+    boolean isXorReasoning()
+    {
+        if (xor == null)
+        {
+            return cdcl;
+        }
+        return xor;
+    }
+
+    /**
+     * Get the number of threads that solve cubes, or the formulas sent to
+     * the daemon.
+     *
+     * @return the number of threads.
+     */
+    int getThreads()
+    {
+        if (threads == 0)
+        {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return threads;
+    }
+
+    /**
+     * Get the positive number that follows an option on the command line.
+     *
+     * @param args the command-line arguments.
+     * @param index the position of the number.
+     * @return the number.
+     * @throws IllegalArgumentException if the number is missing, malformed
+     * or not positive.
+     */
+    private static int number(String[] args, int index)
+    {
+        String text = value(args, index);
+        try
+        {
+            int number = Integer.parseInt(text);
+            if (number > 0)
+            {
+                return number;
+            }
+        }
+        catch (NumberFormatException ex)
+        {
+            // Reported below with the option name.
+        }
+        throw new IllegalArgumentException("Option " + args[index - 1]
+                + " needs a positive number: " + text);
+    }
+
+    /**
+     * Get the list of variables that follows an option on the command line.
+     * The list separates variables and ranges of variables with commas, as
+     * in 1,4,10-20.
+     *
+     * @param args the command-line arguments.
+     * @param index the position of the list.
+     * @return the variables in the order given, without repeats.
+     * @throws IllegalArgumentException if the list is missing or malformed.
+     */
+    private static int[] variables(String[] args, int index)
+    {
+        String text = value(args, index);
+        IntList variables = new IntList();
+        Set<Integer> seen = new HashSet<Integer>();
+        try
+        {
+            for (String part : text.split(","))
+            {
+                int dash = part.indexOf('-', 1);
+                int first = Integer.parseInt(
+                        (dash < 0) ? part : part.substring(0, dash));
+                int last = (dash < 0) ? first
+                        : Integer.parseInt(part.substring(dash + 1));
+                if (first <= 0 || last < first)
+                {
+                    throw new NumberFormatException(part);
+                }
+                for (int variable = first; variable <= last; variable++)
+                {
+                    if (seen.add(variable))
+                    {
+                        variables.add(variable);
+                    }
+                }
+            }
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new IllegalArgumentException("Option " + args[index - 1]
+                    + " needs a list of variables: " + text);
+        }
+        return variables.toArray();
+    }
+
+    /**
+     * Get the value that follows an option on the command line.
+     *
+     * @param args the command-line arguments.
+     * @param index the position of the value.
+     * @return the value of the option.
+     * @throws IllegalArgumentException if the value is missing.
+     */
+    private static String value(String[] args, int index)
+    {
+        if (index >= args.length)
+        {
+            throw new IllegalArgumentException(
+                    "Missing value for option: " + args[index - 1]);
+        }
+        return args[index];
+    }
+}
@@ -2,6 +2,7 @@ package dp_solver;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.InputStream;
 import java.util.Scanner;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -48,6 +49,17 @@ class Parser
         }
     }
 
+    /**
+     * Initialize the Parser with an input stream, which will be read by a
+     * Scanner to its end to parse the contents.
+     *
+     * @param input should hold a formula in the .cnf format.
+     */
+    Parser(InputStream input)
+    {
+        scanner = new Scanner(input);
+    }
+
     /**
      * Parse the File on the Scanner as input for CNF evaluation.
      *
@@ -55,13 +67,12 @@ class Parser
      */
     Formula parseFile()
     {
-        String file_string = "";
+        StringBuilder file_string = new StringBuilder();
         while (scanner.hasNextLine())
         {
-            file_string += formatInput(scanner.nextLine());
+            file_string.append(formatInput(scanner.nextLine()));
         }
-        file_string = file_string.replaceAll("  *", " ");
-        parseInput(file_string);
+        parseInput(file_string.toString().replaceAll("  *", " "));
         return formula;
     }
 
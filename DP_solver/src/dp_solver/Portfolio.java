@@ -0,0 +1,193 @@
+package dp_solver;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Portfolio runs several clause-learning solvers on the same formula at the
+ * same time, each on its own thread with its own copy of the formula. The
+ * solvers differ in branching heuristic, restart strategy, phase and seed,
+ * so that one of them is likely to suit the formula. The first answer wins
+ * and the other solvers are told to stop. Unless sharing is turned off, the
+ * solvers pass short learned clauses to each other through a ClauseExchange.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class Portfolio
+{
+
+    /**
+     * The settings of the portfolio. The first solver uses them as they are
+     * and the others vary them.
+     */
+    private final Options options;
+    /**
+     * The number of clauses the exchange buffer holds.
+     */
+    private static final int EXCHANGE_CAPACITY = 1 << 14;
+    /**
+     * The number of different configurations the solvers cycle through.
+     */
+    private static final int CONFIGURATIONS = 6;
+
+    /**
+     * Initializes a portfolio.
+     *
+     * @param options the settings of the portfolio, including the number of
+     * solvers.
+     */
+    Portfolio(Options options)
+    {
+        this.options = options;
+    }
+
+    /**
+     * Get the settings of one solver of the portfolio. Every solver learns
+     * clauses. The first keeps the given settings, the next ones switch
+     * heuristic, restart strategy and phase, and every solver after the
+     * first gets its own seed.
+     *
+     * @param base the settings of the portfolio.
+     * @param worker the number of the solver.
+     * @return the settings of the solver.
+     */
+    static Options configure(Options base, int worker)
+    {
+        Options options = base.copy();
+        options.cdcl = true;
+        options.portfolio = 1;
+        switch (worker % CONFIGURATIONS)
+        {
+            case 1:
+                options.heuristic = Heuristic.VSIDS;
+                options.restart = RestartStrategy.LUBY;
+                options.phase = "true";
+                break;
+            case 2:
+                options.heuristic = Heuristic.VSIDS;
+                options.restart = RestartStrategy.GLUCOSE;
+                options.phase = "false";
+                options.preprocess = false;
+                break;
+            case 3:
+                options.heuristic = Heuristic.LOOKAHEAD;
+                options.restart = RestartStrategy.LUBY;
+                break;
+            case 4:
+                options.heuristic = Heuristic.JEROSLOW_WANG;
+                options.restart = RestartStrategy.LUBY;
+                options.phase = "saved";
+                break;
+            case 5:
+                options.heuristic = Heuristic.MOMS;
+                options.restart = RestartStrategy.GLUCOSE;
+                options.phase = "saved";
+                break;
+            default:
+                break;
+        }
+        if (worker > 0)
+        {
+            options.seed = base.seed + worker;
+        }
+        return options;
+    }
+
+    /**
+     * Solves the formula with every solver of the portfolio and prints the
+     * answer of the first one to finish.
+     *
+     * @param file_name the name of the file from which the formula is read.
+     * @throws IllegalStateException if every solver failed, with the error
+     * of the last one as its cause.
+     */
+    void solve(final String file_name)
+    {
+        int solvers = options.portfolio;
+        ExecutorService pool = Executors.newFixedThreadPool(solvers,
+                new ThreadFactory()
+                {
+                    @Override
+                    public Thread newThread(Runnable task)
+                    {
+                        // A solver that is still preprocessing when the
+                        // answer is found must not keep the program alive.
+                        Thread thread = new Thread(task);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        CompletionService<Boolean> finished
+                = new ExecutorCompletionService<Boolean>(pool);
+        AtomicBoolean stopped = new AtomicBoolean();
+        ClauseExchange exchange = options.share
+                ? new ClauseExchange(EXCHANGE_CAPACITY) : null;
+        Map<Future<Boolean>, DP_solver> running
+                = new HashMap<Future<Boolean>, DP_solver>();
+        for (int worker = 0; worker < solvers; worker++)
+        {
+            final DP_solver solver = new DP_solver(configure(options, worker),
+                    worker, stopped, exchange);
+            running.put(finished.submit(new Callable<Boolean>()
+            {
+                @Override
+                public Boolean call()
+                {
+                    return solver.search(file_name);
+                }
+            }), solver);
+        }
+
+        Throwable failure = null;
+        try
+        {
+            for (int i = 0; i < solvers; i++)
+            {
+                Future<Boolean> result = finished.take();
+                try
+                {
+                    boolean satisfiable = result.get();
+                    stopped.set(true);
+                    DP_solver winner = running.get(result);
+                    if (satisfiable)
+                    {
+                        winner.success(winner.formula);
+                    }
+                    else
+                    {
+                        winner.failure(winner.formula);
+                    }
+                    return;
+                }
+                catch (ExecutionException ex)
+                {
+                    // Another solver may still find the answer.
+                    failure = ex.getCause();
+                }
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        finally
+        {
+            stopped.set(true);
+            pool.shutdownNow();
+        }
+        throw new IllegalStateException("Every solver failed: " + failure,
+                failure);
+    }
+}
@@ -0,0 +1,942 @@
+package dp_solver;
+
+import static java.lang.Math.abs;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Preprocessor simplifies a parsed Formula before it is searched. It removes
+ * tautologies and repeated variables, assigns unit clauses, removes subsumed
+ * clauses, strengthens clauses by self-subsuming resolution, replaces
+ * equivalent literals found in the binary implication graph by a single
+ * representative, removes clauses containing pure literals and eliminates
+ * variables by resolution when that does not grow the formula (bounded
+ * variable elimination, as in SatELite).
+ *
+ * Every clause that is removed for a pure literal, a substituted variable or
+ * an eliminated variable is recorded together with the literal that has to be made true if the clause
+ * is not satisfied by the model of the simplified formula. The Formula
+ * replays these records in reverse to give eliminated variables their values.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class Preprocessor
+{
+
+    /**
+     * The number of variables in the formula.
+     */
+    private final int variables;
+    /**
+     * Stores the clauses, each sorted by variable. Removed clauses are null.
+     */
+    private ArrayList<int[]> clauses;
+    /**
+     * Stores a 64-bit signature of the variables of each clause, which rules
+     * out most subsumption checks without looking at the clauses.
+     */
+    private long[] signatures;
+    /**
+     * Stores, for every literal, the clauses that contain it. The lists may
+     * still hold removed clauses and clauses the literal was strengthened out
+     * of, which are skipped when the lists are read.
+     */
+    private IntList[] occurrences;
+    /**
+     * Stores the number of live clauses that contain each literal.
+     */
+    private int[] occurrence_counts;
+    /**
+     * Stores the truth values assigned by unit clauses.
+     */
+    private int[] values;
+    /**
+     * Marks the variables that have been eliminated or removed as pure.
+     */
+    private boolean[] eliminated;
+    /**
+     * Stores the unit literals waiting to be assigned.
+     */
+    private IntList units;
+    /**
+     * Stores the clauses waiting to be checked for subsuming other clauses.
+     */
+    private IntList subsumption_queue;
+    /**
+     * Marks the clauses that are in the subsumption queue.
+     */
+    private boolean[] queued;
+    /**
+     * Stores the removed clauses for model reconstruction. Each record is the
+     * literals of the clause, then the literal to make true if the clause is
+     * not satisfied, then the number of literals.
+     */
+    private IntList reconstruction;
+    /**
+     * True once an empty clause has been derived.
+     */
+    private boolean unsatisfiable;
+    /**
+     * Named constant for unset truth values.
+     */
+    private static final int UNSET = -1;
+    /**
+     * Named constant for false truth values.
+     */
+    private static final int FALSE = 0;
+    /**
+     * Named constant for true truth values.
+     */
+    private static final int TRUE = 1;
+    /**
+     * Named constant for a clause that neither subsumes nor strengthens
+     * another.
+     */
+    private static final int NOT_SUBSUMED = Integer.MIN_VALUE;
+    /**
+     * Variables whose clauses would take more resolution steps than this are
+     * not considered for elimination.
+     */
+    private static final int MAX_RESOLUTIONS = 400;
+    /**
+     * Resolvents longer than this stop a variable from being eliminated.
+     */
+    private static final int MAX_RESOLVENT_LENGTH = 20;
+    /**
+     * The number of implication graph edges that may be followed while
+     * looking for failed literals.
+     */
+    static final long FAILED_LITERAL_BUDGET = 1000000;
+    /**
+     * The number of rounds of subsumption and elimination.
+     */
+    private static final int ROUNDS = 3;
+
+    /**
+     * Initializes the preprocessor with the clauses of a parsed formula.
+     *
+     * @param formula the formula read from the input.
+     */
+    Preprocessor(Formula formula)
+    {
+        this.variables = formula.getVariableCount();
+        int clause_count = formula.getOriginalClauseCount();
+        this.clauses = new ArrayList<int[]>(clause_count);
+        this.signatures = new long[Math.max(clause_count, 16)];
+        this.occurrences = new IntList[2 * variables];
+        for (int literal = 0; literal < occurrences.length; literal++)
+        {
+            occurrences[literal] = new IntList();
+        }
+        this.occurrence_counts = new int[2 * variables];
+        this.values = new int[variables];
+        Arrays.fill(this.values, UNSET);
+        this.eliminated = new boolean[variables];
+        this.units = new IntList();
+        this.subsumption_queue = new IntList();
+        this.queued = new boolean[Math.max(clause_count, 16)];
+        this.reconstruction = new IntList();
+        this.unsatisfiable = false;
+
+        for (int clause = 0; clause < clause_count; clause++)
+        {
+            addClause(formula.getOriginalClause(clause));
+        }
+    }
+
+    /**
+     * Runs every simplification and builds the simplified formula. Assigned
+     * variables become unit clauses of the new formula, and the records for
+     * removed clauses are handed to it for model reconstruction.
+     *
+     * @return the simplified formula.
+     */
+    Formula simplify()
+    {
+        propagateUnits();
+        for (int round = 0; round < ROUNDS && !unsatisfiable; round++)
+        {
+            int before = liveClauseCount();
+            substituteEquivalences();
+            subsume();
+            eliminatePureLiterals();
+            eliminateVariables();
+            subsume();
+            if (liveClauseCount() == before)
+            {
+                break;
+            }
+        }
+        return buildFormula();
+    }
+
+    /**
+     * Sorts a clause by variable, drops repeated variables and stores it. A
+     * tautology is dropped, an empty clause makes the formula unsatisfiable
+     * and a unit clause is queued for assignment.
+     *
+     * @param literals the literals of the clause.
+     */
+    private void addClause(int[] literals)
+    {
+        int[] clause = normalize(literals);
+        if (clause == null)
+        {
+            return;
+        }
+        if (clause.length == 0)
+        {
+            unsatisfiable = true;
+            return;
+        }
+        if (clause.length == 1)
+        {
+            units.add(clause[0]);
+            return;
+        }
+        int index = clauses.size();
+        clauses.add(clause);
+        if (index == signatures.length)
+        {
+            signatures = Arrays.copyOf(signatures, 2 * index);
+            queued = Arrays.copyOf(queued, 2 * index);
+        }
+        signatures[index] = signature(clause);
+        for (int i = 0; i < clause.length; i++)
+        {
+            occurrences[Literals.code(clause[i])].add(index);
+            occurrence_counts[Literals.code(clause[i])]++;
+        }
+        enqueueSubsumption(index);
+    }
+
+    /**
+     * Sorts the literals of a clause by variable and removes repeated
+     * literals and literals that are already false.
+     *
+     * @param literals the literals of the clause.
+     * @return the sorted clause, or null if it is a tautology or already
+     * satisfied.
+     */
+    private int[] normalize(int[] literals)
+    {
+        int[] sorted = sortByVariable(literals);
+        IntList kept = new IntList(sorted.length);
+        for (int i = 0; i < sorted.length; i++)
+        {
+            int literal = sorted[i];
+            int value = literalValue(literal);
+            if (value == TRUE)
+            {
+                return null;
+            }
+            if (value == FALSE)
+            {
+                continue;
+            }
+            if (kept.size() > 0 && abs(kept.get(kept.size() - 1)) == abs(literal))
+            {
+                if (kept.get(kept.size() - 1) != literal)
+                {
+                    return null;
+                }
+                continue;
+            }
+            kept.add(literal);
+        }
+        return kept.toArray();
+    }
+
+    /**
+     * Assigns every queued unit literal. Clauses containing the literal are
+     * removed and the literal's negation is removed from the others, which
+     * may produce more unit clauses.
+     */
+    private void propagateUnits()
+    {
+        for (int next = 0; next < units.size() && !unsatisfiable; next++)
+        {
+            int literal = units.get(next);
+            int value = literalValue(literal);
+            if (value == TRUE)
+            {
+                continue;
+            }
+            if (value == FALSE)
+            {
+                unsatisfiable = true;
+                return;
+            }
+            values[abs(literal) - 1] = (literal > 0) ? TRUE : FALSE;
+
+            IntList satisfied = occurrences[Literals.code(literal)];
+            for (int i = 0; i < satisfied.size(); i++)
+            {
+                if (contains(satisfied.get(i), literal))
+                {
+                    removeClause(satisfied.get(i));
+                }
+            }
+            IntList falsified = occurrences[Literals.code(-literal)];
+            for (int i = 0; i < falsified.size(); i++)
+            {
+                if (contains(falsified.get(i), -literal))
+                {
+                    strengthen(falsified.get(i), -literal);
+                }
+            }
+        }
+        units.clear();
+    }
+
+    /**
+     * Checks every queued clause against the clauses that share its least
+     * frequent variable. Clauses it subsumes are removed, and clauses it
+     * subsumes except for one negated literal lose that literal.
+     */
+    private void subsume()
+    {
+        for (int next = 0; next < subsumption_queue.size() && !unsatisfiable; next++)
+        {
+            int index = subsumption_queue.get(next);
+            queued[index] = false;
+            int[] clause = clauses.get(index);
+            if (clause == null)
+            {
+                continue;
+            }
+
+            int best = clause[0];
+            for (int i = 1; i < clause.length; i++)
+            {
+                if (variableCount(clause[i]) < variableCount(best))
+                {
+                    best = clause[i];
+                }
+            }
+            checkSubsumption(index, clause, occurrences[Literals.code(best)]);
+            checkSubsumption(index, clause, occurrences[Literals.code(-best)]);
+            propagateUnits();
+        }
+        subsumption_queue.clear();
+    }
+
+    /**
+     * Tests a clause for subsuming or strengthening every clause in an
+     * occurrence list.
+     *
+     * @param index the index of the subsuming clause.
+     * @param clause the subsuming clause.
+     * @param candidates the clauses to test.
+     */
+    private void checkSubsumption(int index, int[] clause, IntList candidates)
+    {
+        for (int i = 0; i < candidates.size(); i++)
+        {
+            int other = candidates.get(i);
+            int[] other_clause = clauses.get(other);
+            if (other == index || other_clause == null
+                    || other_clause.length < clause.length
+                    || (signatures[index] & ~signatures[other]) != 0)
+            {
+                continue;
+            }
+            int result = subsumes(clause, other_clause);
+            if (result == 0)
+            {
+                removeClause(other);
+            }
+            else if (result != NOT_SUBSUMED)
+            {
+                strengthen(other, result);
+            }
+            if (clauses.get(index) == null)
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Tests whether one clause subsumes another, or would subsume it if one
+     * of its literals were negated.
+     *
+     * @param clause the possibly subsuming clause, sorted by variable.
+     * @param other the possibly subsumed clause, sorted by variable.
+     * @return 0 if clause subsumes other, the literal of other that can be
+     * removed by self-subsuming resolution, or NOT_SUBSUMED otherwise.
+     */
+    private static int subsumes(int[] clause, int[] other)
+    {
+        int flipped = 0;
+        int j = 0;
+        for (int i = 0; i < clause.length; i++)
+        {
+            while (j < other.length && abs(other[j]) < abs(clause[i]))
+            {
+                j++;
+            }
+            if (j == other.length || abs(other[j]) != abs(clause[i]))
+            {
+                return NOT_SUBSUMED;
+            }
+            if (other[j] != clause[i])
+            {
+                if (flipped != 0)
+                {
+                    return NOT_SUBSUMED;
+                }
+                flipped = other[j];
+            }
+            j++;
+        }
+        return flipped;
+    }
+
+    /**
+     * Builds the binary implication graph of the live clauses, fixes the
+     * literals whose negation is implied by the literal itself, and replaces
+     * every variable that is equivalent to a lower variable by that variable.
+     * Each substituted variable is recorded as the two binary clauses that
+     * make it equal to its representative.
+     */
+    private void substituteEquivalences()
+    {
+        ImplicationGraph graph = buildImplicationGraph();
+        if (graph.size() == 0)
+        {
+            return;
+        }
+        IntList failed = graph.findFailedLiterals(FAILED_LITERAL_BUDGET);
+        if (failed.size() > 0)
+        {
+            for (int i = 0; i < failed.size(); i++)
+            {
+                units.add(failed.get(i));
+            }
+            propagateUnits();
+            if (unsatisfiable)
+            {
+                return;
+            }
+            graph = buildImplicationGraph();
+        }
+        if (!graph.findEquivalences())
+        {
+            unsatisfiable = true;
+            return;
+        }
+
+        for (int var = 1; var <= variables && !unsatisfiable; var++)
+        {
+            int representative = graph.getRepresentative(var);
+            if (representative == var || values[var - 1] != UNSET
+                    || eliminated[var - 1])
+            {
+                continue;
+            }
+            IntList positive = liveOccurrences(var);
+            IntList negative = liveOccurrences(-var);
+            substitute(positive, var, representative);
+            substitute(negative, -var, -representative);
+            record(new int[]
+            {
+                var, -representative
+            }, var);
+            record(new int[]
+            {
+                -var, representative
+            }, -var);
+            eliminated[var - 1] = true;
+            propagateUnits();
+        }
+    }
+
+    /**
+     * Replaces a literal by its representative in every listed clause.
+     *
+     * @param indices the clauses containing the literal.
+     * @param literal the literal to replace.
+     * @param representative the literal to replace it with.
+     */
+    private void substitute(IntList indices, int literal, int representative)
+    {
+        for (int i = 0; i < indices.size(); i++)
+        {
+            int[] clause = Arrays.copyOf(clauses.get(indices.get(i)),
+                    clauses.get(indices.get(i)).length);
+            for (int j = 0; j < clause.length; j++)
+            {
+                if (clause[j] == literal)
+                {
+                    clause[j] = representative;
+                }
+            }
+            removeClause(indices.get(i));
+            addClause(clause);
+        }
+    }
+
+    /**
+     * Builds the implication graph of the live binary clauses.
+     *
+     * @return the implication graph.
+     */
+    private ImplicationGraph buildImplicationGraph()
+    {
+        ImplicationGraph graph = new ImplicationGraph(variables);
+        for (int i = 0; i < clauses.size(); i++)
+        {
+            int[] clause = clauses.get(i);
+            if (clause != null && clause.length == 2)
+            {
+                graph.addBinary(clause[0], clause[1]);
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Removes every clause that contains a pure literal, a literal whose
+     * negation does not occur in any clause. Making the literal true satisfies
+     * all of them without falsifying anything.
+     */
+    private void eliminatePureLiterals()
+    {
+        for (int var = 1; var <= variables && !unsatisfiable; var++)
+        {
+            if (values[var - 1] != UNSET || eliminated[var - 1])
+            {
+                continue;
+            }
+            int positive = occurrence_counts[Literals.code(var)];
+            int negative = occurrence_counts[Literals.code(-var)];
+            if (positive > 0 && negative == 0)
+            {
+                removePure(var);
+            }
+            else if (negative > 0 && positive == 0)
+            {
+                removePure(-var);
+            }
+        }
+    }
+
+    /**
+     * Removes the clauses containing a pure literal and records that the
+     * literal has to be made true.
+     *
+     * @param literal the pure literal.
+     */
+    private void removePure(int literal)
+    {
+        IntList satisfied = occurrences[Literals.code(literal)];
+        for (int i = 0; i < satisfied.size(); i++)
+        {
+            if (contains(satisfied.get(i), literal))
+            {
+                removeClause(satisfied.get(i));
+            }
+        }
+        record(new int[]
+        {
+            literal
+        }, literal);
+        eliminated[abs(literal) - 1] = true;
+    }
+
+    /**
+     * Tries to eliminate every variable, starting with the variables that
+     * occur least often. A variable is eliminated by replacing all of its
+     * clauses with their resolvents on it, which is only done if there are no
+     * more resolvents than removed clauses.
+     */
+    private void eliminateVariables()
+    {
+        Integer[] order = new Integer[variables];
+        for (int var = 0; var < variables; var++)
+        {
+            order[var] = var + 1;
+        }
+        Arrays.sort(order, new java.util.Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer first, Integer second)
+            {
+                return variableCount(first) - variableCount(second);
+            }
+        });
+        for (int i = 0; i < variables && !unsatisfiable; i++)
+        {
+            int var = order[i];
+            if (values[var - 1] == UNSET && !eliminated[var - 1]
+                    && variableCount(var) > 0)
+            {
+                tryEliminate(var);
+                subsume();
+            }
+        }
+    }
+
+    /**
+     * Eliminates a variable if its resolvents are no more numerous than its
+     * clauses and none of them is too long.
+     *
+     * @param var the variable to eliminate.
+     */
+    private void tryEliminate(int var)
+    {
+        IntList positive = liveOccurrences(var);
+        IntList negative = liveOccurrences(-var);
+        if ((long) positive.size() * negative.size() > MAX_RESOLUTIONS)
+        {
+            return;
+        }
+        int limit = positive.size() + negative.size();
+        ArrayList<int[]> resolvents = new ArrayList<int[]>();
+        for (int i = 0; i < positive.size(); i++)
+        {
+            for (int j = 0; j < negative.size(); j++)
+            {
+                int[] resolvent = resolve(clauses.get(positive.get(i)),
+                        clauses.get(negative.get(j)), var);
+                if (resolvent == null)
+                {
+                    continue;
+                }
+                if (resolvent.length > MAX_RESOLVENT_LENGTH
+                        || resolvents.size() == limit)
+                {
+                    return;
+                }
+                resolvents.add(resolvent);
+            }
+        }
+
+        for (int i = 0; i < positive.size(); i++)
+        {
+            record(clauses.get(positive.get(i)), var);
+            removeClause(positive.get(i));
+        }
+        for (int i = 0; i < negative.size(); i++)
+        {
+            record(clauses.get(negative.get(i)), -var);
+            removeClause(negative.get(i));
+        }
+        eliminated[var - 1] = true;
+        for (int i = 0; i < resolvents.size(); i++)
+        {
+            addClause(resolvents.get(i));
+        }
+        propagateUnits();
+    }
+
+    /**
+     * Resolves two clauses on a variable.
+     *
+     * @param positive a clause containing the variable, sorted by variable.
+     * @param negative a clause containing its negation, sorted by variable.
+     * @param var the variable to resolve on.
+     * @return the resolvent sorted by variable, or null if it is a tautology.
+     */
+    private static int[] resolve(int[] positive, int[] negative, int var)
+    {
+        IntList resolvent = new IntList(positive.length + negative.length);
+        int i = 0;
+        int j = 0;
+        while (i < positive.length || j < negative.length)
+        {
+            int literal;
+            if (j == negative.length
+                    || (i < positive.length && abs(positive[i]) < abs(negative[j])))
+            {
+                literal = positive[i++];
+            }
+            else if (i == positive.length || abs(negative[j]) < abs(positive[i]))
+            {
+                literal = negative[j++];
+            }
+            else
+            {
+                if (positive[i] != negative[j] && abs(positive[i]) != var)
+                {
+                    return null;
+                }
+                literal = positive[i++];
+                j++;
+            }
+            if (abs(literal) != var)
+            {
+                resolvent.add(literal);
+            }
+        }
+        return resolvent.toArray();
+    }
+
+    /**
+     * Builds the simplified formula from the assigned units and the clauses
+     * that are left, and hands it the records for model reconstruction.
+     *
+     * @return the simplified formula.
+     */
+    private Formula buildFormula()
+    {
+        if (unsatisfiable)
+        {
+            Formula formula = new Formula(1, variables);
+            formula.addClause(0, new int[0]);
+            return formula;
+        }
+        ArrayList<int[]> kept = new ArrayList<int[]>();
+        for (int var = 1; var <= variables; var++)
+        {
+            if (values[var - 1] != UNSET)
+            {
+                kept.add(new int[]
+                {
+                    (values[var - 1] == TRUE) ? var : -var
+                });
+            }
+        }
+        for (int i = 0; i < clauses.size(); i++)
+        {
+            if (clauses.get(i) != null)
+            {
+                kept.add(clauses.get(i));
+            }
+        }
+        Formula formula = new Formula(kept.size(), variables);
+        for (int i = 0; i < kept.size(); i++)
+        {
+            formula.addClause(i, kept.get(i));
+        }
+        formula.setReconstruction(reconstruction.toArray());
+        return formula;
+    }
+
+    /**
+     * Records a removed clause for model reconstruction.
+     *
+     * @param clause the removed clause.
+     * @param witness the literal to make true if the clause is not satisfied.
+     */
+    private void record(int[] clause, int witness)
+    {
+        for (int i = 0; i < clause.length; i++)
+        {
+            reconstruction.add(clause[i]);
+        }
+        reconstruction.add(witness);
+        reconstruction.add(clause.length);
+    }
+
+    /**
+     * Removes a clause and updates the occurrence counts of its literals.
+     *
+     * @param index the index of the clause.
+     */
+    private void removeClause(int index)
+    {
+        int[] clause = clauses.get(index);
+        if (clause == null)
+        {
+            return;
+        }
+        for (int i = 0; i < clause.length; i++)
+        {
+            occurrence_counts[Literals.code(clause[i])]--;
+        }
+        clauses.set(index, null);
+    }
+
+    /**
+     * Removes a literal from a clause. A clause that becomes a unit clause is
+     * removed and its literal queued for assignment, and one that becomes
+     * empty makes the formula unsatisfiable.
+     *
+     * @param index the index of the clause.
+     * @param literal the literal to remove.
+     */
+    private void strengthen(int index, int literal)
+    {
+        int[] clause = clauses.get(index);
+        int[] shorter = new int[clause.length - 1];
+        int j = 0;
+        for (int i = 0; i < clause.length; i++)
+        {
+            if (clause[i] != literal)
+            {
+                shorter[j++] = clause[i];
+            }
+        }
+        occurrence_counts[Literals.code(literal)]--;
+        if (shorter.length == 0)
+        {
+            unsatisfiable = true;
+            clauses.set(index, null);
+        }
+        else if (shorter.length == 1)
+        {
+            units.add(shorter[0]);
+            occurrence_counts[Literals.code(shorter[0])]--;
+            clauses.set(index, null);
+        }
+        else
+        {
+            clauses.set(index, shorter);
+            signatures[index] = signature(shorter);
+            enqueueSubsumption(index);
+        }
+    }
+
+    /**
+     * Adds a clause to the subsumption queue if it is not already there.
+     *
+     * @param index the index of the clause.
+     */
+    private void enqueueSubsumption(int index)
+    {
+        if (!queued[index])
+        {
+            queued[index] = true;
+            subsumption_queue.add(index);
+        }
+    }
+
+    /**
+     * Get the live clauses that contain a literal, dropping stale entries
+     * from its occurrence list.
+     *
+     * @param literal the literal.
+     * @return the indices of the live clauses containing the literal.
+     */
+    private IntList liveOccurrences(int literal)
+    {
+        IntList list = occurrences[Literals.code(literal)];
+        IntList live = new IntList();
+        int kept = 0;
+        for (int i = 0; i < list.size(); i++)
+        {
+            if (contains(list.get(i), literal))
+            {
+                list.set(kept++, list.get(i));
+                live.add(list.get(i));
+            }
+        }
+        list.shrink(kept);
+        return live;
+    }
+
+    /**
+     * Tests whether a live clause contains a literal.
+     *
+     * @param index the index of the clause.
+     * @param literal the literal.
+     * @return true if the clause is live and contains the literal.
+     */
+    private boolean contains(int index, int literal)
+    {
+        int[] clause = clauses.get(index);
+        if (clause == null)
+        {
+            return false;
+        }
+        for (int i = 0; i < clause.length; i++)
+        {
+            if (clause[i] == literal)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of live clauses containing a variable with either sign.
+     *
+     * @param literal a literal of the variable.
+     * @return the number of live clauses containing the variable.
+     */
+    private int variableCount(int literal)
+    {
+        return occurrence_counts[Literals.code(literal)]
+                + occurrence_counts[Literals.code(-literal)];
+    }
+
+    /**
+     * Counts the clauses that have not been removed.
+     *
+     * @return the number of live clauses.
+     */
+    private int liveClauseCount()
+    {
+        int count = 0;
+        for (int i = 0; i < clauses.size(); i++)
+        {
+            if (clauses.get(i) != null)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the truth value of a literal under the unit assignments.
+     *
+     * @param literal the literal.
+     * @return TRUE, FALSE or UNSET.
+     */
+    private int literalValue(int literal)
+    {
+        int value = values[abs(literal) - 1];
+        if (value == UNSET || literal > 0)
+        {
+            return value;
+        }
+        return TRUE - value;
+    }
+
+    /**
+     * Computes the signature of a clause, a bit set of its variables modulo
+     * 64.
+     *
+     * @param clause the clause.
+     * @return the signature of the clause.
+     */
+    private static long signature(int[] clause)
+    {
+        long signature = 0;
+        for (int i = 0; i < clause.length; i++)
+        {
+            signature |= 1L << (abs(clause[i]) & 63);
+        }
+        return signature;
+    }
+
+    /**
+     * Sorts the literals of a clause by variable.
+     *
+     * @param literals the literals.
+     * @return a sorted copy of the literals.
+     */
+    private static int[] sortByVariable(int[] literals)
+    {
+        int[] sorted = Arrays.copyOf(literals, literals.length);
+        // Insertion sort, since clauses are short.
+        for (int i = 1; i < sorted.length; i++)
+        {
+            int literal = sorted[i];
+            int j = i - 1;
+            while (j >= 0 && abs(sorted[j]) > abs(literal))
+            {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = literal;
+        }
+        return sorted;
+    }
+}
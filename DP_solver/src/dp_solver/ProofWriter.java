@@ -0,0 +1,271 @@
+package dp_solver;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * ProofWriter writes a DRAT proof of unsatisfiability in the binary format
+ * that DRAT checkers read. A proof lists every clause the search learned, in
+ * order, and every learned clause it deleted, ending with the empty clause.
+ * A checker can then confirm that each learned clause follows from the
+ * clauses before it by unit propagation, and so that the formula is
+ * unsatisfiable.
+ *
+ * In the binary format a clause is the byte 'a' for an added clause or 'd'
+ * for a deleted one, followed by its literals and a 0 byte. A literal of
+ * variable v is written as 2 * v, plus 1 if it is negated, in groups of
+ * seven bits with the lowest group first and the high bit set on every
+ * group but the last. That number is the code of the literal in the
+ * ClauseArena plus 2, so clauses in the arena are written without decoding.
+ *
+ * The search writes into a direct buffer. A full buffer is handed to a
+ * writer thread, which drains it into the file while the search goes on with
+ * another buffer, so the search only waits for the disk when every buffer is
+ * full.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class ProofWriter
+{
+
+    /**
+     * The file the proof is written to.
+     */
+    private final FileChannel channel;
+    /**
+     * The buffers that are empty and ready to be filled.
+     */
+    private final BlockingQueue<ByteBuffer> empty;
+    /**
+     * The buffers that are full and waiting to be written.
+     */
+    private final BlockingQueue<ByteBuffer> full;
+    /**
+     * The buffer the search is filling.
+     */
+    private ByteBuffer buffer;
+    /**
+     * The thread that writes full buffers to the file.
+     */
+    private final Thread writer;
+    /**
+     * The error the writer thread met, or null.
+     */
+    private volatile IOException failure;
+    /**
+     * The buffer that tells the writer thread to stop.
+     */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+    /**
+     * The number of bytes in every buffer.
+     */
+    private static final int BUFFER_BYTES = 1 << 22;
+    /**
+     * The number of buffers.
+     */
+    private static final int BUFFERS = 4;
+    /**
+     * The largest number of bytes one literal takes, with the 0 byte that
+     * may follow it.
+     */
+    private static final int LITERAL_BYTES = 6;
+
+    /**
+     * Creates the proof file and starts the writer thread.
+     *
+     * @param file_name the name of the proof file.
+     * @throws IOException if the file cannot be created.
+     */
+    ProofWriter(String file_name) throws IOException
+    {
+        this.channel = new FileOutputStream(file_name).getChannel();
+        this.empty = new ArrayBlockingQueue<ByteBuffer>(BUFFERS);
+        this.full = new ArrayBlockingQueue<ByteBuffer>(BUFFERS + 1);
+        for (int i = 1; i < BUFFERS; i++)
+        {
+            empty.add(ByteBuffer.allocateDirect(BUFFER_BYTES));
+        }
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        this.failure = null;
+        this.writer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                drain();
+            }
+        }, "proof-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Writes a clause that was added to the formula.
+     *
+     * @param clause the literals of the clause, negative if the variable is
+     * negated.
+     */
+    void add(int[] clause)
+    {
+        put('a');
+        for (int literal : clause)
+        {
+            putCode(Literals.code(literal));
+        }
+        put(0);
+    }
+
+    /**
+     * Writes a clause that was deleted from the formula.
+     *
+     * @param arena the arena that holds the clause.
+     * @param offset the offset of the clause in the arena.
+     */
+    void delete(ClauseArena arena, int offset)
+    {
+        put('d');
+        int length = arena.length(offset);
+        for (int i = 0; i < length; i++)
+        {
+            putCode(arena.get(offset, i));
+        }
+        put(0);
+    }
+
+    /**
+     * Writes the rest of the proof and closes the file.
+     *
+     * @throws IOException if the proof could not be written.
+     */
+    void close() throws IOException
+    {
+        hand(buffer);
+        hand(END);
+        try
+        {
+            writer.join();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * Writes one byte.
+     *
+     * @param value the byte.
+     */
+    private void put(int value)
+    {
+        if (buffer.remaining() < LITERAL_BYTES)
+        {
+            swap();
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Writes a literal in groups of seven bits.
+     *
+     * @param code the code of the literal in the ClauseArena.
+     */
+    private void putCode(int code)
+    {
+        if (buffer.remaining() < LITERAL_BYTES)
+        {
+            swap();
+        }
+        int number = code + 2;
+        while ((number & ~0x7f) != 0)
+        {
+            buffer.put((byte) ((number & 0x7f) | 0x80));
+            number >>>= 7;
+        }
+        buffer.put((byte) number);
+    }
+
+    /**
+     * Hands the full buffer to the writer thread and takes an empty one.
+     */
+    private void swap()
+    {
+        hand(buffer);
+        try
+        {
+            buffer = empty.take();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing proof");
+        }
+    }
+
+    /**
+     * Hands a buffer to the writer thread.
+     *
+     * @param next the buffer.
+     */
+    private void hand(ByteBuffer next)
+    {
+        try
+        {
+            full.put(next);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing proof");
+        }
+    }
+
+    /**
+     * Writes the buffers handed over by the search to the file until the
+     * proof ends. After an error the buffers are still taken and given back,
+     * so that the search never waits for them, but nothing more is written.
+     */
+    private void drain()
+    {
+        try
+        {
+            while (true)
+            {
+                ByteBuffer next = full.take();
+                if (next == END)
+                {
+                    return;
+                }
+                next.flip();
+                try
+                {
+                    while (failure == null && next.hasRemaining())
+                    {
+                        channel.write(next);
+                    }
+                }
+                catch (IOException ex)
+                {
+                    failure = ex;
+                }
+                next.clear();
+                empty.put(next);
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            failure = new IOException("Proof writer was interrupted", ex);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package dp_solver;
+
+/**
+ * RestartPolicy counts the conflicts of the clause-learning search and tells
+ * it when to restart according to a RestartStrategy.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class RestartPolicy
+{
+
+    /**
+     * The strategy that decides when to restart.
+     */
+    private final RestartStrategy strategy;
+    /**
+     * The number of conflicts since the last restart.
+     */
+    private long conflicts;
+    /**
+     * The number of restarts so far.
+     */
+    private int restarts;
+    /**
+     * The number of conflicts allowed before the next Luby restart.
+     */
+    private long luby_limit;
+    /**
+     * The moving average of the literal block distance of recent learned
+     * clauses.
+     */
+    private double fast_average;
+    /**
+     * The moving average of the literal block distance of all learned
+     * clauses.
+     */
+    private double slow_average;
+    /**
+     * The number of conflicts seen by the moving averages. It is used to
+     * correct the bias of the averages towards their starting value of 0.
+     */
+    private long averaged;
+    /**
+     * The number of conflicts in one unit of the Luby sequence.
+     */
+    private static final int LUBY_UNIT = 100;
+    /**
+     * The weight of a new conflict in the fast moving average.
+     */
+    private static final double FAST_WEIGHT = 1.0 / 32;
+    /**
+     * The weight of a new conflict in the slow moving average.
+     */
+    private static final double SLOW_WEIGHT = 1.0 / 4096;
+    /**
+     * Glucose restarts when the fast average times this margin is still
+     * above the slow average.
+     */
+    private static final double GLUCOSE_MARGIN = 0.8;
+    /**
+     * The fewest conflicts glucose allows between two restarts.
+     */
+    private static final int GLUCOSE_MINIMUM = 50;
+
+    /**
+     * Initializes the policy for the given strategy.
+     *
+     * @param strategy the strategy that decides when to restart.
+     */
+    RestartPolicy(RestartStrategy strategy)
+    {
+        this.strategy = strategy;
+        this.luby_limit = LUBY_UNIT * luby(1);
+    }
+
+    /**
+     * Records a conflict and the literal block distance of the clause that
+     * was learned from it.
+     *
+     * @param lbd the number of decision levels in the learned clause.
+     */
+    void conflict(int lbd)
+    {
+        conflicts++;
+        averaged++;
+        fast_average += FAST_WEIGHT * (lbd - fast_average);
+        slow_average += SLOW_WEIGHT * (lbd - slow_average);
+    }
+
+    /**
+     * Tests whether the search should restart before its next decision.
+     *
+     * @return true if the search should restart.
+     */
+    boolean shouldRestart()
+    {
+        switch (strategy)
+        {
+            case LUBY:
+                return conflicts >= luby_limit;
+            case GLUCOSE:
+                return conflicts >= GLUCOSE_MINIMUM
+                        && unbiased(fast_average, FAST_WEIGHT) * GLUCOSE_MARGIN
+                        > unbiased(slow_average, SLOW_WEIGHT);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Records that the search restarted.
+     */
+    void restarted()
+    {
+        conflicts = 0;
+        restarts++;
+        luby_limit = LUBY_UNIT * luby(restarts + 1);
+    }
+
+    /**
+     * Get the number of restarts so far.
+     *
+     * @return the number of restarts.
+     */
+    int getRestarts()
+    {
+        return restarts;
+    }
+
+    /**
+     * Removes the bias of a moving average that started at 0, which would
+     * otherwise keep the slow average too low for thousands of conflicts.
+     *
+     * @param average the moving average.
+     * @param weight the weight of a new conflict in the average.
+     * @return the corrected average.
+     */
+    private double unbiased(double average, double weight)
+    {
+        return average / (1 - Math.pow(1 - weight, averaged));
+    }
+
+    /**
+     * Get the i-th element of the Luby sequence 1, 1, 2, 1, 1, 2, 4, ...
+     *
+     * @param i the position in the sequence, starting at 1.
+     * @return the i-th element of the sequence.
+     */
+    static long luby(int i)
+    {
+        // Find the complete subsequence of length 2^k - 1 that contains i.
+        int k = 1;
+        while ((1L << k) - 1 < i)
+        {
+            k++;
+        }
+        while (i != (1L << k) - 1)
+        {
+            // i lies in a copy of the previous subsequence, so drop the
+            // first copy and look at the smaller one.
+            i -= (int) ((1L << (k - 1)) - 1);
+            k = 1;
+            while ((1L << k) - 1 < i)
+            {
+                k++;
+            }
+        }
+        return 1L << (k - 1);
+    }
+}
@@ -0,0 +1,63 @@
+package dp_solver;
+
+/**
+ * RestartStrategy names the ways the clause-learning search can decide to
+ * throw away its decisions and start again from decision level 0. Learned
+ * clauses, activities and saved phases are kept across a restart.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+enum RestartStrategy
+{
+
+    /**
+     * Never restart.
+     */
+    NONE("none"),
+    /**
+     * Restart after a number of conflicts that follows the Luby sequence
+     * 1, 1, 2, 1, 1, 2, 4, 1, ... times a fixed unit.
+     */
+    LUBY("luby"),
+    /**
+     * Restart when the recent learned clauses have a much higher literal
+     * block distance than the long-run average, the way glucose does.
+     */
+    GLUCOSE("glucose");
+
+    /**
+     * The name of the strategy on the command line.
+     */
+    private final String name;
+
+    /**
+     * Initializes the strategy with its command-line name.
+     *
+     * @param name the name of the strategy on the command line.
+     */
+    RestartStrategy(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Finds the strategy with the given command-line name.
+     *
+     * @param name the name of the strategy on the command line.
+     * @return the strategy with that name.
+     * @throws IllegalArgumentException if no strategy has that name.
+     */
+    static RestartStrategy forName(String name)
+    {
+        for (RestartStrategy strategy : values())
+        {
+            if (strategy.name.equals(name))
+            {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown restart strategy: " + name);
+    }
+}
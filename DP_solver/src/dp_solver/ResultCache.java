@@ -0,0 +1,380 @@
+package dp_solver;
+
+import static java.lang.Math.abs;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ResultCache remembers the answers of formulas that were solved before, so
+ * that a formula given again is answered without being searched. Formulas are
+ * told apart by a SHA-256 digest of their clauses, with the literals of every
+ * clause and the clauses themselves sorted, so the same formula written in
+ * another order has the same digest.
+ *
+ * The answers are kept in two files that are only ever appended to. The data
+ * file holds one record per answer: the digest, whether the formula is
+ * satisfiable, the number of variables and, for a satisfiable formula, a
+ * solution packed eight variables to a byte. The index file, named after the
+ * data file with ".idx" added, holds the digest and data file offset of every
+ * record, so that opening the cache reads the index alone. A record is
+ * written before its index entry, and a later record for the same digest
+ * replaces an earlier one, so an interrupted write at worst loses its own
+ * answer. Appends are made under a lock on the data file, so several solvers
+ * can share a cache.
+ *
+ * A solution read from the cache is checked against the clauses of the
+ * formula before it is given out, and one that does not satisfy them is
+ * treated as missing.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class ResultCache
+{
+
+    /**
+     * An answer read from the cache.
+     */
+    static final class Result
+    {
+
+        /**
+         * A solution of the formula, where the value of variable v is at
+         * index v - 1, or null if the formula is unsatisfiable.
+         */
+        final boolean[] model;
+
+        /**
+         * Initializes an answer.
+         *
+         * @param model a solution of the formula, or null if it is
+         * unsatisfiable.
+         */
+        Result(boolean[] model)
+        {
+            this.model = model;
+        }
+    }
+    /**
+     * The file the records are appended to.
+     */
+    private final FileChannel data;
+    /**
+     * The file the index entries are appended to.
+     */
+    private final FileChannel index;
+    /**
+     * The data file offset of the latest record for every digest.
+     */
+    private final Map<ByteBuffer, Long> offsets;
+    /**
+     * The number of bytes in a digest.
+     */
+    private static final int DIGEST_BYTES = 32;
+    /**
+     * The number of bytes in an index entry: the digest and the offset.
+     */
+    private static final int ENTRY_BYTES = DIGEST_BYTES + 8;
+    /**
+     * The number of bytes in a record before the solution: the digest, the
+     * answer and the number of variables.
+     */
+    private static final int HEADER_BYTES = DIGEST_BYTES + 1 + 4;
+
+    /**
+     * Opens the cache in a data file and its index, creating them if they do
+     * not exist, and reads the index.
+     *
+     * @param file_name the name of the data file.
+     * @throws IOException if the files cannot be opened or read.
+     */
+    ResultCache(String file_name) throws IOException
+    {
+        this.data = new RandomAccessFile(file_name, "rw").getChannel();
+        this.index = new RandomAccessFile(file_name + ".idx", "rw")
+                .getChannel();
+        this.offsets = new HashMap<ByteBuffer, Long>();
+        // An entry cut short by an interrupted write is left out.
+        long entries = index.size() / ENTRY_BYTES;
+        ByteBuffer contents = ByteBuffer.allocate(
+                (int) (entries * ENTRY_BYTES));
+        readFully(index, contents, 0);
+        contents.flip();
+        long data_size = data.size();
+        for (long i = 0; i < entries; i++)
+        {
+            byte[] digest = new byte[DIGEST_BYTES];
+            contents.get(digest);
+            long offset = contents.getLong();
+            if (offset + HEADER_BYTES <= data_size)
+            {
+                offsets.put(ByteBuffer.wrap(digest), offset);
+            }
+        }
+    }
+
+    /**
+     * Computes the digest of a formula from its variable count and its
+     * clauses, sorted and without repeated literals or clauses.
+     *
+     * @param formula the formula, as read from the input.
+     * @return the SHA-256 digest of the formula.
+     */
+    static byte[] digest(Formula formula)
+    {
+        int clause_count = formula.getOriginalClauseCount();
+        int[][] clauses = new int[clause_count][];
+        for (int i = 0; i < clause_count; i++)
+        {
+            int[] clause = formula.getOriginalClause(i).clone();
+            Arrays.sort(clause);
+            int length = 0;
+            for (int literal : clause)
+            {
+                if (length == 0 || clause[length - 1] != literal)
+                {
+                    clause[length++] = literal;
+                }
+            }
+            clauses[i] = Arrays.copyOf(clause, length);
+        }
+        Arrays.sort(clauses, new Comparator<int[]>()
+        {
+            @Override
+            public int compare(int[] first, int[] second)
+            {
+                for (int i = 0; i < first.length && i < second.length; i++)
+                {
+                    if (first[i] != second[i])
+                    {
+                        return (first[i] < second[i]) ? -1 : 1;
+                    }
+                }
+                return first.length - second.length;
+            }
+        });
+
+        MessageDigest sha;
+        try
+        {
+            sha = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            // Every Java platform is required to implement SHA-256.
+            throw new IllegalStateException(ex);
+        }
+        ByteBuffer words = ByteBuffer.allocate(1 << 16);
+        words.putInt(formula.getVariableCount());
+        int[] previous = null;
+        for (int[] clause : clauses)
+        {
+            if (Arrays.equals(clause, previous))
+            {
+                continue;
+            }
+            previous = clause;
+            if (words.remaining() < 4)
+            {
+                words.flip();
+                sha.update(words);
+                words.clear();
+            }
+            words.putInt(clause.length);
+            for (int literal : clause)
+            {
+                if (words.remaining() < 4)
+                {
+                    words.flip();
+                    sha.update(words);
+                    words.clear();
+                }
+                words.putInt(literal);
+            }
+        }
+        words.flip();
+        sha.update(words);
+        return sha.digest();
+    }
+
+    /**
+     * Looks up the answer for a formula.
+     *
+     * @param digest the digest of the formula.
+     * @param formula the formula, as read from the input, which a cached
+     * solution is checked against.
+     * @return the answer, or null if the formula is not in the cache or its
+     * cached solution does not satisfy it.
+     * @throws IOException if the data file cannot be read.
+     */
+    Result lookup(byte[] digest, Formula formula) throws IOException
+    {
+        Long offset = offsets.get(ByteBuffer.wrap(digest));
+        if (offset == null)
+        {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(data, header, offset);
+        header.flip();
+        byte[] stored = new byte[DIGEST_BYTES];
+        header.get(stored);
+        boolean satisfiable = header.get() != 0;
+        int variables = header.getInt();
+        if (!Arrays.equals(stored, digest)
+                || variables != formula.getVariableCount())
+        {
+            return null;
+        }
+        if (!satisfiable)
+        {
+            return new Result(null);
+        }
+        ByteBuffer packed = ByteBuffer.allocate((variables + 7) / 8);
+        readFully(data, packed, offset + HEADER_BYTES);
+        boolean[] model = new boolean[variables];
+        for (int var = 0; var < variables; var++)
+        {
+            model[var] = (packed.get(var >> 3) & (1 << (var & 7))) != 0;
+        }
+        return satisfies(formula, model) ? new Result(model) : null;
+    }
+
+    /**
+     * Adds the answer for a formula to the cache.
+     *
+     * @param digest the digest of the formula.
+     * @param model a solution of the formula, where the value of variable v
+     * is at index v - 1, or null if the formula is unsatisfiable.
+     * @param variables the number of variables of the formula.
+     * @throws IOException if the answer cannot be written.
+     */
+    void store(byte[] digest, boolean[] model, int variables)
+            throws IOException
+    {
+        int solution_bytes = (model == null) ? 0 : (variables + 7) / 8;
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + solution_bytes);
+        record.put(digest);
+        record.put((byte) ((model == null) ? 0 : 1));
+        record.putInt(variables);
+        if (model != null)
+        {
+            byte[] packed = new byte[solution_bytes];
+            for (int var = 0; var < variables; var++)
+            {
+                if (model[var])
+                {
+                    packed[var >> 3] |= 1 << (var & 7);
+                }
+            }
+            record.put(packed);
+        }
+        record.flip();
+        FileLock lock = data.lock();
+        try
+        {
+            long offset = data.size();
+            writeFully(data, record, offset);
+            ByteBuffer entry = ByteBuffer.allocate(ENTRY_BYTES);
+            entry.put(digest);
+            entry.putLong(offset);
+            entry.flip();
+            // An entry cut short before is overwritten, so that the entries
+            // stay aligned.
+            writeFully(index, entry, index.size() / ENTRY_BYTES * ENTRY_BYTES);
+            offsets.put(ByteBuffer.wrap(digest.clone()), offset);
+        }
+        finally
+        {
+            lock.release();
+        }
+    }
+
+    /**
+     * Closes the files of the cache.
+     *
+     * @throws IOException if a file cannot be closed.
+     */
+    void close() throws IOException
+    {
+        data.close();
+        index.close();
+    }
+
+    /**
+     * Tests whether an assignment satisfies every clause of a formula.
+     *
+     * @param formula the formula, as read from the input.
+     * @param model the truth value of every variable.
+     * @return true if every clause has a true literal.
+     */
+    static boolean satisfies(Formula formula, boolean[] model)
+    {
+        for (int i = 0; i < formula.getOriginalClauseCount(); i++)
+        {
+            boolean satisfied = false;
+            for (int literal : formula.getOriginalClause(i))
+            {
+                if (model[abs(literal) - 1] == (literal > 0))
+                {
+                    satisfied = true;
+                    break;
+                }
+            }
+            if (!satisfied)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads from a file until a buffer is full.
+     *
+     * @param file the file.
+     * @param buffer the buffer.
+     * @param position the offset in the file to read from.
+     * @throws IOException if the file cannot be read or ends first.
+     */
+    private static void readFully(FileChannel file, ByteBuffer buffer,
+            long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            int read = file.read(buffer, position);
+            if (read < 0)
+            {
+                throw new IOException("Result cache ends inside a record");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Writes the rest of a buffer to a file.
+     *
+     * @param file the file.
+     * @param buffer the buffer.
+     * @param position the offset in the file to write at.
+     * @throws IOException if the file cannot be written.
+     */
+    private static void writeFully(FileChannel file, ByteBuffer buffer,
+            long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            position += file.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package dp_solver;
+
+import static java.lang.Math.abs;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * SAT4JSolver decides a formula with the default solver of the SAT4J library,
+ * the same one the graph coloring project hands its formulas to. It is given
+ * the input clauses of the formula, and a solution it finds is read back
+ * from the model of the SAT4J solver.
+ *
+ * The library is looked up when SAT4JSolver is first used rather than linked
+ * in, so the rest of the solver builds and runs without it. It is found when
+ * org.sat4j.core.jar, which the graph coloring project bundles, is on the
+ * classpath.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class SAT4JSolver
+{
+
+    /**
+     * The parts of the SAT4J library that are used.
+     */
+    private static final class Library
+    {
+
+        /**
+         * SolverFactory.newDefault().
+         */
+        final Method new_default;
+        /**
+         * ISolver.newVar(int).
+         */
+        final Method new_var;
+        /**
+         * ISolver.setExpectedNumberOfClauses(int).
+         */
+        final Method expect_clauses;
+        /**
+         * ISolver.addClause(IVecInt).
+         */
+        final Method add_clause;
+        /**
+         * ISolver.isSatisfiable().
+         */
+        final Method is_satisfiable;
+        /**
+         * ISolver.model().
+         */
+        final Method model;
+        /**
+         * VecInt(int[]).
+         */
+        final Constructor<?> vec_int;
+        /**
+         * ContradictionException, thrown when the clauses added are found to
+         * contradict each other.
+         */
+        final Class<?> contradiction;
+
+        /**
+         * Looks up the classes and methods of the library.
+         *
+         * @throws ReflectiveOperationException if the library is not on the
+         * classpath.
+         */
+        Library() throws ReflectiveOperationException
+        {
+            Class<?> factory = Class.forName("org.sat4j.minisat.SolverFactory");
+            Class<?> solver = Class.forName("org.sat4j.specs.ISolver");
+            Class<?> vector = Class.forName("org.sat4j.specs.IVecInt");
+            this.new_default = factory.getMethod("newDefault");
+            this.new_var = solver.getMethod("newVar", int.class);
+            this.expect_clauses = solver.getMethod(
+                    "setExpectedNumberOfClauses", int.class);
+            this.add_clause = solver.getMethod("addClause", vector);
+            this.is_satisfiable = solver.getMethod("isSatisfiable");
+            this.model = solver.getMethod("model");
+            this.vec_int = Class.forName("org.sat4j.core.VecInt")
+                    .getConstructor(int[].class);
+            this.contradiction = Class.forName(
+                    "org.sat4j.specs.ContradictionException");
+        }
+
+        /**
+         * Looks up the library.
+         *
+         * @return the library, or null if it is not on the classpath.
+         */
+        static Library load()
+        {
+            try
+            {
+                return new Library();
+            }
+            catch (ReflectiveOperationException ex)
+            {
+                return null;
+            }
+            catch (LinkageError ex)
+            {
+                return null;
+            }
+        }
+    }
+    /**
+     * The library, or null if it is not on the classpath.
+     */
+    private static final Library LIBRARY = Library.load();
+    /**
+     * The SAT4J solver holding the clauses.
+     */
+    private final Object solver;
+    /**
+     * True if SAT4J found the clauses contradictory while they were added.
+     */
+    private boolean contradictory;
+    /**
+     * The truth value of every variable in the solution found by solve().
+     */
+    private final boolean[] values;
+
+    /**
+     * Gives the input clauses of a formula to a new SAT4J solver.
+     *
+     * @param formula the formula, as read from the input.
+     * @throws IllegalStateException if the library is not on the classpath.
+     */
+    SAT4JSolver(Formula formula)
+    {
+        if (!isAvailable())
+        {
+            throw new IllegalStateException(
+                    "SAT4J needs org.sat4j.core.jar on the classpath");
+        }
+        int variables = formula.getVariableCount();
+        this.solver = call(null, LIBRARY.new_default);
+        this.contradictory = false;
+        this.values = new boolean[variables];
+        call(solver, LIBRARY.new_var, variables);
+        call(solver, LIBRARY.expect_clauses, formula.getOriginalClauseCount());
+        for (int i = 0; i < formula.getOriginalClauseCount(); i++)
+        {
+            // SAT4J does not accept a clause with a literal and its negation.
+            int[] clause = Literals.withoutRepeats(formula.getOriginalClause(i));
+            if (clause == null)
+            {
+                continue;
+            }
+            Object vector;
+            try
+            {
+                vector = LIBRARY.vec_int.newInstance((Object) clause);
+            }
+            catch (ReflectiveOperationException ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+            try
+            {
+                LIBRARY.add_clause.invoke(solver, vector);
+            }
+            catch (InvocationTargetException ex)
+            {
+                if (LIBRARY.contradiction.isInstance(ex.getCause()))
+                {
+                    contradictory = true;
+                    return;
+                }
+                throw new IllegalStateException(ex.getCause());
+            }
+            catch (IllegalAccessException ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    /**
+     * Tests whether the SAT4J library is on the classpath.
+     *
+     * @return true if SAT4JSolver can be used.
+     */
+    static boolean isAvailable()
+    {
+        return LIBRARY != null;
+    }
+
+    /**
+     * Lets SAT4J decide whether the clauses can be satisfied.
+     *
+     * @return true if a solution was found, false if none exists.
+     * @throws IllegalStateException if SAT4J gave up before deciding.
+     */
+    boolean solve()
+    {
+        if (contradictory)
+        {
+            return false;
+        }
+        if (!((Boolean) call(solver, LIBRARY.is_satisfiable)))
+        {
+            return false;
+        }
+        for (int literal : (int[]) call(solver, LIBRARY.model))
+        {
+            values[abs(literal) - 1] = literal > 0;
+        }
+        return true;
+    }
+
+    /**
+     * Get the solution found by solve().
+     *
+     * @return the truth value of every variable, where the value of variable
+     * v is at index v - 1.
+     */
+    boolean[] getModel()
+    {
+        return values.clone();
+    }
+
+    /**
+     * Calls a method of the library.
+     *
+     * @param target the object the method is called on, or null for a static
+     * method.
+     * @param method the method.
+     * @param arguments the arguments of the method.
+     * @return what the method returned.
+     * @throws IllegalStateException if the method threw an exception, such as
+     * the TimeoutException of a solver that gave up before deciding.
+     */
+    private static Object call(Object target, Method method,
+            Object... arguments)
+    {
+        try
+        {
+            return method.invoke(target, arguments);
+        }
+        catch (InvocationTargetException ex)
+        {
+            throw new IllegalStateException("SAT4J failed: " + ex.getCause(),
+                    ex.getCause());
+        }
+        catch (IllegalAccessException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
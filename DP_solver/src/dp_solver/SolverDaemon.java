@@ -0,0 +1,221 @@
+package dp_solver;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * SolverDaemon answers formulas sent to a port on the loopback address, so
+ * that many small formulas are solved by one process whose classes are loaded
+ * and whose search is already compiled, rather than each paying for the start
+ * of a new one.
+ *
+ * A client connects, sends a formula in the .cnf format and closes its side
+ * of the connection for writing. The daemon answers with the lines the solver
+ * prints for a formula, followed by a line of timings in microseconds:
+ *
+ * <pre>
+ * Formula is satisfiable
+ * [1=TRUE, 2=FALSE, ...]
+ * c time queued=12 parse=840 solve=2310
+ * </pre>
+ *
+ * A formula that cannot be read is answered with a line starting with
+ * "c error". Every formula is solved with the options the daemon was started
+ * with, or with the options -auto selects for it.
+ *
+ * Connections are accepted by one thread and solved by a fixed number of
+ * workers, which take them from a queue of bounded length. When the queue is
+ * full, the accepting thread solves the formula itself, so that it stops
+ * accepting connections until a worker is free and further clients wait to
+ * be accepted instead of filling the memory.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class SolverDaemon
+{
+
+    /**
+     * The options formulas are solved with.
+     */
+    private final Options options;
+    /**
+     * The selector that chooses the options for every formula, or null to
+     * solve every formula with the same options.
+     */
+    private final EngineSelector selector;
+    /**
+     * The workers and the queue of connections waiting for them.
+     */
+    private final ThreadPoolExecutor workers;
+    /**
+     * The socket connections are accepted on.
+     */
+    private final ServerSocket server;
+    /**
+     * The number of milliseconds a client may take to send its formula.
+     */
+    private static final int READ_TIMEOUT = 60000;
+    /**
+     * The number of connections the system holds for the daemon while it is
+     * not accepting them.
+     */
+    private static final int BACKLOG = 1024;
+
+    /**
+     * Opens the port of the options on the loopback address and starts the
+     * workers.
+     *
+     * @param options the options, with the port, the number of workers, the
+     * length of the queue, and the options formulas are solved with.
+     * @throws IOException if the port cannot be opened or the rules of -auto
+     * cannot be read.
+     */
+    SolverDaemon(Options options) throws IOException
+    {
+        this.options = options;
+        this.selector = options.auto ? new EngineSelector(options) : null;
+        final AtomicInteger worker_count = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(options.getThreads(),
+                options.getThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(options.queue_capacity),
+                new ThreadFactory()
+                {
+                    @Override
+                    public Thread newThread(Runnable task)
+                    {
+                        return new Thread(task, "solver-"
+                                + worker_count.incrementAndGet());
+                    }
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.server = new ServerSocket(options.daemon_port, BACKLOG,
+                InetAddress.getByName(null));
+    }
+
+    /**
+     * Accepts connections and hands them to the workers until the port is
+     * closed.
+     *
+     * @throws IOException if a connection cannot be accepted.
+     */
+    void serve() throws IOException
+    {
+        System.out.println("c listening on " + server.getInetAddress()
+                .getHostAddress() + ":" + server.getLocalPort());
+        try
+        {
+            while (true)
+            {
+                final Socket client = server.accept();
+                final long accepted = System.nanoTime();
+                workers.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        answer(client, accepted);
+                    }
+                });
+            }
+        }
+        finally
+        {
+            workers.shutdown();
+            server.close();
+        }
+    }
+
+    /**
+     * Reads a formula from a client, solves it and writes the answer back.
+     *
+     * @param client the connection to the client.
+     * @param accepted the time the connection was accepted, from
+     * System.nanoTime().
+     */
+    private void answer(Socket client, long accepted)
+    {
+        long started = System.nanoTime();
+        try
+        {
+            client.setSoTimeout(READ_TIMEOUT);
+            Writer reply = new BufferedWriter(new OutputStreamWriter(
+                    client.getOutputStream(), "US-ASCII"));
+            try
+            {
+                Formula parsed = new Parser(client.getInputStream())
+                        .parseFile();
+                long parsed_time = System.nanoTime();
+                if (parsed == null)
+                {
+                    reply.write("c error no \"p cnf\" line\n");
+                    return;
+                }
+                Options selected = (selector == null) ? options
+                        : selector.select(new InstanceFeatures(parsed));
+                if (!selected.isSingleSearch())
+                {
+                    reply.write("c error the selected engine does not answer"
+                            + " a single formula\n");
+                    return;
+                }
+                DP_solver solver = new DP_solver(selected);
+                boolean satisfiable = solver.search(parsed);
+                long solved_time = System.nanoTime();
+                if (satisfiable)
+                {
+                    reply.write("Formula is satisfiable\n");
+                    reply.write(solver.formula.getSolution());
+                    reply.write('\n');
+                }
+                else
+                {
+                    reply.write("Formula is unsatisfiable\n");
+                }
+                reply.write("c time queued=" + (started - accepted) / 1000
+                        + " parse=" + (parsed_time - started) / 1000
+                        + " solve=" + (solved_time - parsed_time) / 1000
+                        + "\n");
+            }
+            catch (RuntimeException ex)
+            {
+                // A malformed formula must not take down the worker.
+                reply.write("c error " + ex + "\n");
+            }
+            finally
+            {
+                reply.flush();
+            }
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(SolverDaemon.class.getName()).log(Level.WARNING,
+                    null, ex);
+        }
+        finally
+        {
+            try
+            {
+                client.close();
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(SolverDaemon.class.getName()).log(
+                        Level.WARNING, null, ex);
+            }
+        }
+    }
+}
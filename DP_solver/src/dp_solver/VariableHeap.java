@@ -0,0 +1,254 @@
+package dp_solver;
+
+import java.util.Arrays;
+
+/**
+ * VariableHeap is an indexed binary max-heap of variables ordered by a score
+ * for each variable. The position of every variable in the heap is stored, so
+ * a variable's score can be raised and the variable moved up the heap in
+ * O(log n) time. Ties are broken in favor of the lower variable.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class VariableHeap
+{
+
+    /**
+     * Stores the score of every variable.
+     */
+    private double[] scores;
+    /**
+     * Stores the variables in heap order.
+     */
+    private int[] heap;
+    /**
+     * Stores the position of every variable in the heap, or NOT_IN_HEAP.
+     */
+    private int[] positions;
+    /**
+     * The number of variables in the heap.
+     */
+    private int size;
+    /**
+     * Named constant for a variable that is not in the heap.
+     */
+    private static final int NOT_IN_HEAP = -1;
+
+    /**
+     * Initializes a heap holding every variable with a score of 0.
+     *
+     * @param variables the number of variables.
+     */
+    VariableHeap(int variables)
+    {
+        this.scores = new double[variables];
+        this.heap = new int[variables];
+        this.positions = new int[variables];
+        for (int var = 0; var < variables; var++)
+        {
+            heap[var] = var;
+            positions[var] = var;
+        }
+        this.size = variables;
+    }
+
+    /**
+     * Tests whether the heap has no variables left.
+     *
+     * @return true if the heap is empty.
+     */
+    boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Tests whether a variable is in the heap.
+     *
+     * @param var the variable index.
+     * @return true if the variable is in the heap.
+     */
+    boolean contains(int var)
+    {
+        return positions[var] != NOT_IN_HEAP;
+    }
+
+    /**
+     * Get the score of a variable.
+     *
+     * @param var the variable index.
+     * @return the score of the variable.
+     */
+    double getScore(int var)
+    {
+        return scores[var];
+    }
+
+    /**
+     * Adds a variable back into the heap if it is not already there.
+     *
+     * @param var the variable index.
+     */
+    void insert(int var)
+    {
+        if (contains(var))
+        {
+            return;
+        }
+        heap[size] = var;
+        positions[var] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Removes and returns the variable with the highest score.
+     * Pre: the heap is not empty.
+     *
+     * @return the variable with the highest score.
+     */
+    int removeMax()
+    {
+        int max = heap[0];
+        int last = heap[--size];
+        positions[max] = NOT_IN_HEAP;
+        if (size > 0)
+        {
+            heap[0] = last;
+            positions[last] = 0;
+            siftDown(0);
+        }
+        return max;
+    }
+
+    /**
+     * Adds the given amount to a variable's score and restores the heap order.
+     *
+     * @param var the variable index.
+     * @param amount the amount to add, which must not be negative.
+     */
+    void increase(int var, double amount)
+    {
+        scores[var] += amount;
+        if (contains(var))
+        {
+            siftUp(positions[var]);
+        }
+    }
+
+    /**
+     * Multiplies every score by the same factor. The heap order does not
+     * change, so no variable has to move.
+     *
+     * @param factor the positive factor to scale the scores by.
+     */
+    void scale(double factor)
+    {
+        for (int var = 0; var < scores.length; var++)
+        {
+            scores[var] *= factor;
+        }
+    }
+
+    /**
+     * Makes room for more variables and adds the new ones to the heap with a
+     * score of 0.
+     *
+     * @param variables the new number of variables, at least the current
+     * number.
+     */
+    void grow(int variables)
+    {
+        int old_variables = scores.length;
+        scores = Arrays.copyOf(scores, variables);
+        heap = Arrays.copyOf(heap, variables);
+        positions = Arrays.copyOf(positions, variables);
+        for (int var = old_variables; var < variables; var++)
+        {
+            positions[var] = NOT_IN_HEAP;
+            insert(var);
+        }
+    }
+
+    /**
+     * Replaces every score and rebuilds the heap from the variables it
+     * currently contains.
+     *
+     * @param new_scores the new score of every variable.
+     */
+    void setScores(double[] new_scores)
+    {
+        scores = Arrays.copyOf(new_scores, scores.length);
+        for (int i = size / 2 - 1; i >= 0; i--)
+        {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Moves the variable at the given position up until its parent does not
+     * have a lower score.
+     *
+     * @param position the position of the variable in the heap.
+     */
+    private void siftUp(int position)
+    {
+        int var = heap[position];
+        while (position > 0)
+        {
+            int parent = (position - 1) / 2;
+            if (!before(var, heap[parent]))
+            {
+                break;
+            }
+            heap[position] = heap[parent];
+            positions[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = var;
+        positions[var] = position;
+    }
+
+    /**
+     * Moves the variable at the given position down until neither of its
+     * children has a higher score.
+     *
+     * @param position the position of the variable in the heap.
+     */
+    private void siftDown(int position)
+    {
+        int var = heap[position];
+        while (2 * position + 1 < size)
+        {
+            int child = 2 * position + 1;
+            if (child + 1 < size && before(heap[child + 1], heap[child]))
+            {
+                child++;
+            }
+            if (!before(heap[child], var))
+            {
+                break;
+            }
+            heap[position] = heap[child];
+            positions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = var;
+        positions[var] = position;
+    }
+
+    /**
+     * Tests whether one variable belongs above another in the heap.
+     *
+     * @param first a variable index.
+     * @param second another variable index.
+     * @return true if first has the higher score, or the same score and a
+     * lower index.
+     */
+    private boolean before(int first, int second)
+    {
+        return scores[first] > scores[second]
+                || (scores[first] == scores[second] && first < second);
+    }
+}
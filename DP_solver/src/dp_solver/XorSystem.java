@@ -0,0 +1,454 @@
+package dp_solver;
+
+import static java.lang.Math.abs;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * XorSystem holds the parity constraints hidden in a formula as a system of
+ * linear equations over GF(2). An XOR of k variables is written in CNF as the
+ * 2^(k-1) clauses over those variables that rule out every assignment with
+ * the wrong parity. Resolution needs exponentially many steps to combine such
+ * constraints, while Gauss-Jordan elimination combines them directly.
+ *
+ * Each equation is a row of bits, one column per variable that occurs in some
+ * XOR, plus the parity the variables must add up to. Under a partial
+ * assignment the rows are eliminated on the unassigned columns only. A row
+ * that is left with one unassigned column forces that variable, and a row
+ * that is left with none is either satisfied or violated. The row itself is
+ * the XOR the consequence follows from, so its variables make up the clause
+ * that explains it.
+ *
+ * @author Kevin Dittmar
+ * @author Jonathan Frederickson
+ * @author Andrew Genova
+ */
+class XorSystem
+{
+
+    /**
+     * Stores the variable index of every column.
+     */
+    private final int[] columns;
+    /**
+     * Stores the rows of the system, 64 columns to a word.
+     */
+    private long[][] rows;
+    /**
+     * Stores the parity of every row: true if the variables of the row must
+     * have an odd number of true values.
+     */
+    private boolean[] parities;
+    /**
+     * Stores the rows while they are eliminated under an assignment.
+     */
+    private final long[][] work_rows;
+    /**
+     * Stores the parities while the rows are eliminated under an assignment.
+     */
+    private final boolean[] work_parities;
+    /**
+     * Marks the columns whose variables are unassigned.
+     */
+    private final long[] unassigned;
+    /**
+     * Marks the columns whose variables are true.
+     */
+    private final long[] true_columns;
+    /**
+     * XORs of more variables than this are not looked for, since they take
+     * 2^(k-1) clauses each.
+     */
+    private static final int MAX_XOR_LENGTH = 5;
+    /**
+     * The largest number of word operations that one elimination may take.
+     * Larger systems would slow every propagation down more than they help.
+     */
+    private static final long MAX_ELIMINATION_WORK = 1L << 20;
+
+    /**
+     * Initializes a system from rows over the given columns and brings it
+     * into reduced row echelon form.
+     *
+     * @param columns the variable index of every column.
+     * @param rows the rows of the system.
+     * @param parities the parity of every row.
+     */
+    private XorSystem(int[] columns, long[][] rows, boolean[] parities)
+    {
+        this.columns = columns;
+        this.rows = rows;
+        this.parities = parities;
+        eliminate();
+        int words = words(columns.length);
+        this.work_rows = new long[this.rows.length][words];
+        this.work_parities = new boolean[this.rows.length];
+        this.unassigned = new long[words];
+        this.true_columns = new long[words];
+    }
+
+    /**
+     * Looks for groups of clauses in a formula that together encode an XOR.
+     * The clauses of a group have the same variables, and every sign pattern
+     * with the right parity of negations occurs among them.
+     *
+     * @param formula the formula to be searched.
+     * @return the XORs of the formula, or null if there are none or there
+     * are too many to eliminate quickly.
+     */
+    static XorSystem detect(Formula formula)
+    {
+        // Maps the sorted variables of a clause to two bit sets of the sign
+        // patterns seen: those with an even and those with an odd number of
+        // negations.
+        Map<String, long[]> groups = new HashMap<String, long[]>();
+        List<int[]> keys = new ArrayList<int[]>();
+        for (int i = 0; i < formula.getOriginalClauseCount(); i++)
+        {
+            int[] clause = formula.getOriginalClause(i);
+            if (clause.length < 2 || clause.length > MAX_XOR_LENGTH)
+            {
+                continue;
+            }
+            int[] literals = sortByVariable(clause);
+            int[] variables = new int[literals.length];
+            int pattern = 0;
+            boolean distinct = true;
+            for (int j = 0; j < literals.length; j++)
+            {
+                variables[j] = abs(literals[j]);
+                distinct = distinct && (j == 0
+                        || variables[j] != variables[j - 1]);
+                if (literals[j] < 0)
+                {
+                    pattern |= 1 << j;
+                }
+            }
+            if (!distinct)
+            {
+                continue;
+            }
+            String key = Arrays.toString(variables);
+            long[] patterns = groups.get(key);
+            if (patterns == null)
+            {
+                patterns = new long[2];
+                groups.put(key, patterns);
+                keys.add(variables);
+            }
+            patterns[Integer.bitCount(pattern) % 2] |= 1L << pattern;
+        }
+
+        // Number the variables of the complete groups as columns.
+        IntList xor_variables = new IntList();
+        IntList xor_parities = new IntList();
+        int[] column_of = new int[formula.getVariableCount()];
+        Arrays.fill(column_of, -1);
+        IntList column_variables = new IntList();
+        for (int[] variables : keys)
+        {
+            long[] patterns = groups.get(Arrays.toString(variables));
+            int needed = 1 << (variables.length - 1);
+            for (int negations = 0; negations < 2; negations++)
+            {
+                if (Long.bitCount(patterns[negations]) != needed)
+                {
+                    continue;
+                }
+                // The clauses rule out every assignment whose true variables
+                // are exactly the negated ones, so the parity of the true
+                // variables must differ from the parity of the negations.
+                for (int j = 0; j < variables.length; j++)
+                {
+                    int var_index = variables[j] - 1;
+                    if (column_of[var_index] == -1)
+                    {
+                        column_of[var_index] = column_variables.size();
+                        column_variables.add(var_index);
+                    }
+                    xor_variables.add(var_index);
+                }
+                xor_variables.add(-1);
+                xor_parities.add(1 - negations);
+            }
+        }
+        if (xor_parities.size() == 0)
+        {
+            return null;
+        }
+        int words = words(column_variables.size());
+        if ((long) xor_parities.size() * xor_parities.size() * words
+                > MAX_ELIMINATION_WORK)
+        {
+            return null;
+        }
+
+        int[] columns = column_variables.toArray();
+        long[][] rows = new long[xor_parities.size()][words];
+        boolean[] parities = new boolean[xor_parities.size()];
+        int row = 0;
+        for (int i = 0; i < xor_variables.size(); i++)
+        {
+            if (xor_variables.get(i) == -1)
+            {
+                parities[row] = xor_parities.get(row) == 1;
+                row++;
+                continue;
+            }
+            int column = column_of[xor_variables.get(i)];
+            rows[row][column >> 6] ^= 1L << column;
+        }
+        return new XorSystem(columns, rows, parities);
+    }
+
+    /**
+     * Get the number of independent XORs in the system.
+     *
+     * @return the number of rows.
+     */
+    int size()
+    {
+        return rows.length;
+    }
+
+    /**
+     * Eliminates the system on the unassigned variables and collects the
+     * clauses that explain its consequences. Each clause of a forced
+     * variable starts with the literal that is forced and continues with the
+     * negations of the assignments that force it. If the assignment violates
+     * the system, only the clause made false by the assignment is returned.
+     *
+     * @param truth_values the truth value of every variable: Formula.TRUE,
+     * Formula.FALSE or Formula.UNSET.
+     * @return the explaining clauses, empty if nothing is forced.
+     */
+    List<int[]> deduce(int[] truth_values)
+    {
+        Arrays.fill(unassigned, 0);
+        Arrays.fill(true_columns, 0);
+        for (int column = 0; column < columns.length; column++)
+        {
+            int value = truth_values[columns[column]];
+            if (value == Formula.UNSET)
+            {
+                unassigned[column >> 6] |= 1L << column;
+            }
+            else if (value == Formula.TRUE)
+            {
+                true_columns[column >> 6] |= 1L << column;
+            }
+        }
+        for (int row = 0; row < rows.length; row++)
+        {
+            System.arraycopy(rows[row], 0, work_rows[row], 0, unassigned.length);
+            work_parities[row] = parities[row];
+        }
+
+        for (int row = 0; row < rows.length; row++)
+        {
+            int pivot = firstColumn(work_rows[row], unassigned);
+            if (pivot == -1)
+            {
+                continue;
+            }
+            long bit = 1L << pivot;
+            int word = pivot >> 6;
+            for (int other = 0; other < rows.length; other++)
+            {
+                if (other != row && (work_rows[other][word] & bit) != 0)
+                {
+                    addRow(other, row);
+                }
+            }
+        }
+
+        List<int[]> clauses = new ArrayList<int[]>();
+        for (int row = 0; row < rows.length; row++)
+        {
+            int open = 0;
+            boolean parity = work_parities[row];
+            for (int word = 0; word < unassigned.length; word++)
+            {
+                open += Long.bitCount(work_rows[row][word] & unassigned[word]);
+                parity ^= Long.bitCount(work_rows[row][word]
+                        & true_columns[word]) % 2 == 1;
+            }
+            if (open == 1)
+            {
+                clauses.add(explain(row, firstColumn(work_rows[row],
+                        unassigned), parity));
+            }
+            else if (open == 0 && parity)
+            {
+                clauses.clear();
+                clauses.add(explain(row, -1, false));
+                return clauses;
+            }
+        }
+        return clauses;
+    }
+
+    /**
+     * Builds the clause that explains a row's consequence under the current
+     * assignment. Every assigned variable of the row appears negated with
+     * respect to its value.
+     *
+     * @param row the row in the work rows.
+     * @param forced the column of the forced variable, or -1 if the row is
+     * violated.
+     * @param value the value the forced variable must take.
+     * @return the clause, starting with the forced literal if there is one.
+     */
+    private int[] explain(int row, int forced, boolean value)
+    {
+        IntList clause = new IntList();
+        if (forced != -1)
+        {
+            int var = columns[forced] + 1;
+            clause.add(value ? var : -var);
+        }
+        for (int word = 0; word < unassigned.length; word++)
+        {
+            long bits = work_rows[row][word] & ~unassigned[word];
+            while (bits != 0)
+            {
+                int column = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int var = columns[column] + 1;
+                boolean is_true = (true_columns[word] & (1L << column)) != 0;
+                clause.add(is_true ? -var : var);
+            }
+        }
+        return clause.toArray();
+    }
+
+    /**
+     * Brings the rows into reduced row echelon form before any variable is
+     * assigned, dropping the rows that depend on the others. If the system
+     * has no solution, a single empty row with odd parity is left, which
+     * deduce() reports as an empty clause.
+     */
+    private void eliminate()
+    {
+        long[] all = new long[words(columns.length)];
+        Arrays.fill(all, -1L);
+        int rank = 0;
+        boolean contradiction = false;
+        for (int row = 0; row < rows.length; row++)
+        {
+            int pivot = firstColumn(rows[row], all);
+            if (pivot == -1)
+            {
+                contradiction = contradiction || parities[row];
+                continue;
+            }
+            for (int other = 0; other < rows.length; other++)
+            {
+                if (other != row
+                        && (rows[other][pivot >> 6] & (1L << pivot)) != 0)
+                {
+                    for (int word = 0; word < all.length; word++)
+                    {
+                        rows[other][word] ^= rows[row][word];
+                    }
+                    parities[other] ^= parities[row];
+                }
+            }
+            // Rows above this one may have been emptied already, so move
+            // the pivot row up to keep the independent rows together.
+            long[] pivot_row = rows[row];
+            boolean pivot_parity = parities[row];
+            rows[row] = rows[rank];
+            parities[row] = parities[rank];
+            rows[rank] = pivot_row;
+            parities[rank] = pivot_parity;
+            rank++;
+        }
+        if (contradiction)
+        {
+            rows = new long[][]
+            {
+                new long[all.length]
+            };
+            parities = new boolean[]
+            {
+                true
+            };
+            return;
+        }
+        rows = Arrays.copyOf(rows, rank);
+        parities = Arrays.copyOf(parities, rank);
+    }
+
+    /**
+     * Adds one work row to another.
+     *
+     * @param target the row that is changed.
+     * @param source the row that is added to it.
+     */
+    private void addRow(int target, int source)
+    {
+        for (int word = 0; word < unassigned.length; word++)
+        {
+            work_rows[target][word] ^= work_rows[source][word];
+        }
+        work_parities[target] ^= work_parities[source];
+    }
+
+    /**
+     * Get the first column of a row that is also marked in a mask.
+     *
+     * @param row the row.
+     * @param mask the columns to look at.
+     * @return the column, or -1 if there is none.
+     */
+    private static int firstColumn(long[] row, long[] mask)
+    {
+        for (int word = 0; word < row.length; word++)
+        {
+            long bits = row[word] & mask[word];
+            if (bits != 0)
+            {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the number of words needed for a row.
+     *
+     * @param columns the number of columns.
+     * @return the number of 64-bit words.
+     */
+    private static int words(int columns)
+    {
+        return (columns + 63) >> 6;
+    }
+
+    /**
+     * Get a copy of a clause with its literals sorted by variable.
+     *
+     * @param clause the clause.
+     * @return the sorted copy.
+     */
+    private static int[] sortByVariable(int[] clause)
+    {
+        int[] sorted = clause.clone();
+        for (int i = 1; i < sorted.length; i++)
+        {
+            int literal = sorted[i];
+            int j = i - 1;
+            while (j >= 0 && abs(sorted[j]) > abs(literal))
+            {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = literal;
+        }
+        return sorted;
+    }
+}